@@ -0,0 +1,115 @@
+package org.resthub.web.springmvc.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Action of a route holding {@code {arg}} placeholders, e.g. {@code {controller}.{action}}, split once in literal
+ * parts and argument names.
+ * <p>
+ * The action of a request is identified by the {@link #key(Map) values} of the placeholders, the expanded actions
+ * of the values last seen are kept, so the same action string isn't rebuilt for each request. A placeholder without
+ * argument is left as is.
+ *
+ * @see Router.Route#getActionTemplate()
+ */
+public final class ActionTemplate {
+
+    /**
+     * Maximum number of expanded actions kept per template, the values come from the request path so the least
+     * recently used actions are evicted
+     */
+    static final int MAX_CACHED_ACTIONS = 256;
+
+    private static final Object NO_VALUE = new Object();
+
+    private final String[] literals;
+    private final String[] names;
+    private final LruCache<Object, String> actions = new LruCache<>(MAX_CACHED_ACTIONS);
+
+    private ActionTemplate(String[] literals, String[] names) {
+        this.literals = literals;
+        this.names = names;
+    }
+
+    /**
+     * @return the compiled action, or null if it has no placeholder
+     */
+    static ActionTemplate compile(String action) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int literalStart = 0;
+        int open = action.indexOf('{');
+        while (open >= 0) {
+            int close = action.indexOf('}', open + 1);
+            if (close < 0) break;
+            int nested = action.indexOf('{', open + 1);
+            if (nested >= 0 && nested < close) {
+                open = nested;
+                continue;
+            }
+            literals.add(action.substring(literalStart, open));
+            names.add(action.substring(open + 1, close));
+            literalStart = close + 1;
+            open = action.indexOf('{', literalStart);
+        }
+        if (names.isEmpty()) return null;
+        literals.add(action.substring(literalStart));
+        return new ActionTemplate(literals.toArray(new String[0]), names.toArray(new String[0]));
+    }
+
+    /**
+     * @return the names of the placeholders, in the order of the action
+     */
+    public List<String> getNames() {
+        return List.of(names);
+    }
+
+    /**
+     * @param args the arguments of a matched request
+     * @return the values of the placeholders, as a map key
+     */
+    public Object key(Map<String, String> args) {
+        if (names.length == 1) {
+            String value = args.get(names[0]);
+            return value != null ? value : NO_VALUE;
+        }
+        String[] values = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            values[i] = args.get(names[i]);
+        }
+        return Arrays.asList(values);
+    }
+
+    /**
+     * @param args the arguments of a matched request
+     * @return the action with its placeholders replaced by the arguments
+     */
+    public String expand(Map<String, String> args) {
+        return expand(key(args), args);
+    }
+
+    /**
+     * Same as {@link #expand(Map)}, with the key of the arguments already computed.
+     *
+     * @param key  the {@link #key(Map) key} of the arguments
+     * @param args the arguments of a matched request
+     */
+    public String expand(Object key, Map<String, String> args) {
+        return actions.get(key, k -> {
+            StringBuilder builder = new StringBuilder(literals[0]);
+            for (int i = 0; i < names.length; i++) {
+                String value = args.get(names[i]);
+                if (value != null) {
+                    builder.append(value);
+                } else {
+                    builder.append('{').append(names[i]).append('}');
+                }
+                builder.append(literals[i + 1]);
+            }
+            return builder.toString();
+        });
+    }
+}
@@ -0,0 +1,88 @@
+package org.resthub.web.springmvc.router;
+
+import jregex.Matcher;
+import jregex.Pattern;
+import org.resthub.web.springmvc.router.Router.Route;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches a request with a single regex alternating the path patterns of all the routes, in declaration order
+ * (the approach of the Play! and Rails routers).
+ * <p>
+ * Each alternative is a named group {@code r<position>}, and the groups of the route arguments are renamed
+ * {@code r<position>_<name>} so the arguments can be read back from the combined matcher. As the regex engine tries
+ * the alternatives in order, the first captured alternative is the first route matching the path. If that route
+ * refuses the request (host or media types), the next routes are tried one by one.
+ * <p>
+ * Patterns with back references can't be renumbered inside the alternation, a route list holding one is matched
+ * route by route.
+ *
+ * @see MatchingEngine#ALTERNATION
+ */
+final class AlternationMatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlternationMatcher.class);
+
+    private static final Pattern groupPattern = new Pattern("\\(\\{([a-zA-Z_0-9]+)\\}");
+    private static final Pattern backReferencePattern = new Pattern("\\\\[1-9]");
+
+    private final Route[] routes;
+    private final String[] groupNames;
+    private final String[] argPrefixes;
+    private final Pattern pattern;
+    /**
+     * True if the request host is checked before the routes are matched
+     */
+    private final boolean hostChecked;
+
+    AlternationMatcher(List<Route> routes, boolean hostChecked) {
+        this.routes = routes.toArray(new Route[0]);
+        this.hostChecked = hostChecked;
+        this.groupNames = new String[this.routes.length];
+        this.argPrefixes = new String[this.routes.length];
+        this.pattern = this.routes.length > 0 ? compile() : null;
+    }
+
+    private Pattern compile() {
+        StringBuilder alternation = new StringBuilder("(?:");
+        for (int position = 0; position < routes.length; position++) {
+            String source = routes[position].pattern.toString();
+            if (backReferencePattern.matcher(source).find()) {
+                logger.debug("Route {} has a back reference, matching the routes one by one", routes[position]);
+                return null;
+            }
+            groupNames[position] = "r" + position;
+            argPrefixes[position] = groupNames[position] + "_";
+            if (position > 0) alternation.append('|');
+            alternation.append("({").append(groupNames[position]).append('}')
+                    .append(groupPattern.replacer("({" + argPrefixes[position] + "$1}").replace(source))
+                    .append(')');
+        }
+        return new Pattern(alternation.append(')').toString());
+    }
+
+    RouteMatch match(String method, String path, MediaType accept, MediaType contentType, String host) {
+        int next = 0;
+        if (pattern != null) {
+            Matcher matcher = pattern.matcher(path);
+            if (!matcher.matches()) return null;
+            int first = 0;
+            while (matcher.group(groupNames[first]) == null) first++;
+            Route route = routes[first];
+            if (route.matchesMethod(method) && route.matchesRequest(accept, contentType, host, hostChecked)) {
+                return new RouteMatch(route, route.extractArgs(matcher, argPrefixes[first], null, host));
+            }
+            next = first + 1;
+        }
+        for (int position = next; position < routes.length; position++) {
+            Map<String, String> args = routes[position].matches(method, path, accept, contentType, host, hostChecked);
+            if (args != null) return new RouteMatch(routes[position], args);
+        }
+        return null;
+    }
+}
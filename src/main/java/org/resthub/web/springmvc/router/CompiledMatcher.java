@@ -0,0 +1,513 @@
+package org.resthub.web.springmvc.router;
+
+import org.resthub.web.springmvc.router.Router.Route;
+import org.resthub.web.springmvc.router.Router.Route.Segment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+import org.springframework.http.MediaType;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Matches the routes with a class generated when the route table is compiled.
+ * <p>
+ * The generated code switches on the number of segments of the request path, then on the hash of the segment
+ * telling most routes apart, and finally checks the candidate routes in declaration order with inlined tests of the
+ * method, of the literal segments and of the argument constraints. It gives the position of the first candidate, the
+ * media types and the host are then checked by the {@link Route} and the arguments are read from the segment bounds.
+ * <p>
+ * A route is compiled when each of its segments is a literal or a single argument whose constraint is
+ * {@value Route#DEFAULT_CONSTRAINT} or a simple character class ({@code [a-z0-9_-]+}, {@code [0-9]+}). The other
+ * routes stay candidates of every branch and are matched by their jregex pattern. If the class can't be generated,
+ * all the routes are matched one by one.
+ *
+ * @see MatchingEngine#COMPILED
+ */
+final class CompiledMatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompiledMatcher.class);
+
+    /**
+     * Maximum number of candidates checked by a generated method, keeps the methods under the JVM size limit
+     */
+    private static final int CANDIDATES_PER_METHOD = 128;
+
+    private static final String GENERATED = Type.getInternalName(CompiledMatcher.class) + "$Generated";
+    private static final String SELF = Type.getInternalName(CompiledMatcher.class);
+    private static final String STRING = "java/lang/String";
+    private static final String NEXT_DESC = Type.getMethodDescriptor(Type.INT_TYPE, Type.getType(String.class),
+            Type.getType(String.class), Type.getType(int[].class), Type.getType(int[].class), Type.INT_TYPE, Type.INT_TYPE);
+    private static final String CANDIDATES_DESC = Type.getMethodDescriptor(Type.INT_TYPE, Type.getType(String.class),
+            Type.getType(String.class), Type.getType(int[].class), Type.getType(int[].class), Type.INT_TYPE);
+    private static final int[] NO_SEGMENTS = new int[0];
+
+    /**
+     * Implemented by the generated class.
+     */
+    interface CompiledRoutes {
+
+        /**
+         * @param method the request method
+         * @param path   the request path
+         * @param starts the start of each segment of the path
+         * @param ends   the end of each segment of the path
+         * @param count  the number of segments, -1 if the path doesn't start with '/'
+         * @param from   the first position to consider
+         * @return the position of the next candidate route, -1 if there are none
+         */
+        int next(String method, String path, int[] starts, int[] ends, int count, int from);
+    }
+
+    private final Route[] routes;
+    /**
+     * Inlined checks of the segments of each compiled route, null for an interpreted route
+     */
+    private final Check[][] checks;
+    private final List<int[]> charClasses = new ArrayList<>();
+    private final CompiledRoutes compiled;
+    /**
+     * True if the request host is checked before the routes are matched
+     */
+    private final boolean hostChecked;
+
+    CompiledMatcher(List<Route> routes, boolean hostChecked) {
+        this.routes = routes.toArray(new Route[0]);
+        this.hostChecked = hostChecked;
+        this.checks = new Check[this.routes.length][];
+        for (int position = 0; position < this.routes.length; position++) {
+            checks[position] = checks(this.routes[position]);
+        }
+        this.compiled = this.routes.length > 0 ? generate() : null;
+    }
+
+    RouteMatch match(String method, String path, MediaType accept, MediaType contentType, String host) {
+        if (compiled == null) {
+            for (Route route : routes) {
+                Map<String, String> args = route.matches(method, path, accept, contentType, host, hostChecked);
+                if (args != null) return new RouteMatch(route, args);
+            }
+            return null;
+        }
+        int count = -1;
+        int[] starts = NO_SEGMENTS;
+        int[] ends = NO_SEGMENTS;
+        if (path.startsWith("/")) {
+            count = 0;
+            for (int i = 0; i < path.length(); i++) {
+                if (path.charAt(i) == '/') count++;
+            }
+            starts = new int[count];
+            ends = new int[count];
+            int start = 1;
+            for (int i = 0; i < count; i++) {
+                int end = path.indexOf('/', start);
+                if (end < 0) end = path.length();
+                starts[i] = start;
+                ends[i] = end;
+                start = end + 1;
+            }
+        }
+        int position = compiled.next(method, path, starts, ends, count, 0);
+        while (position >= 0) {
+            Route route = routes[position];
+            if (checks[position] == null) {
+                Map<String, String> args = route.matches(method, path, accept, contentType, host, hostChecked);
+                if (args != null) return new RouteMatch(route, args);
+            } else if (route.matchesRequest(accept, contentType, host, hostChecked)) {
+                return new RouteMatch(route, args(position, path, starts, ends, host));
+            }
+            position = compiled.next(method, path, starts, ends, count, position + 1);
+        }
+        return null;
+    }
+
+    private Map<String, String> args(int position, String path, int[] starts, int[] ends, String host) {
+        Route route = routes[position];
+        Check[] segments = checks[position];
+        String[] values = null;
+        for (int i = 0; i < segments.length; i++) {
+            int slot = segments[i].slot;
+            if (slot < 0) continue;
+            if (values == null) values = route.argValues.clone();
+            values[slot] = path.substring(starts[i], ends[i]);
+        }
+        return route.extractArgs(null, "", values, host);
+    }
+
+    /**
+     * @return the checks of the segments of the route, or null if the route can't be compiled
+     */
+    private Check[] checks(Route route) {
+        if (route.segments == null) return null;
+        Check[] segments = new Check[route.segments.size()];
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < segments.length; i++) {
+            Segment segment = route.segments.get(i);
+            if (segment.literal != null) {
+                segments[i] = new Check(segment.literal, -1, 0, -1);
+                continue;
+            }
+            if (segment.argName == null || !names.add(segment.argName)) return null;
+            int arg = -1;
+            for (int a = 0; a < route.args.size(); a++) {
+                if (route.args.get(a).defaultValue == null && route.args.get(a).name.equals(segment.argName)) arg = a;
+            }
+            if (arg < 0) return null;
+            int slot = route.argSlots[arg];
+            if (Route.DEFAULT_CONSTRAINT.equals(segment.constraint)) {
+                segments[i] = new Check(null, -1, 1, slot);
+                continue;
+            }
+            int[] charClass = PathRegex.charClass(segment.constraint);
+            if (charClass == null) return null;
+            charClasses.add(charClass);
+            segments[i] = new Check(null, charClasses.size() - 1, segment.constraint.endsWith("+") ? 1 : 0, slot);
+        }
+        return segments;
+    }
+
+    /**
+     * Called by the generated code, checks that the characters of a segment are in a class.
+     */
+    static boolean matchesClass(String path, int start, int end, int[] charClass, int min) {
+        if (end - start < min) return false;
+        boolean negated = charClass[0] != 0;
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            boolean in = false;
+            for (int r = 1; r < charClass.length; r += 2) {
+                if (c >= charClass[r] && c <= charClass[r + 1]) {
+                    in = true;
+                    break;
+                }
+            }
+            if (in == negated) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Called by the generated code, same as the {@link String#hashCode()} of a segment.
+     */
+    static int hash(String path, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + path.charAt(i);
+        }
+        return hash;
+    }
+
+    private CompiledRoutes generate() {
+        try {
+            ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+                @Override
+                protected String getCommonSuperClass(String type1, String type2) {
+                    return "java/lang/Object";
+                }
+            };
+            writer.visit(Opcodes.V17, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, GENERATED, null, "java/lang/Object",
+                    new String[]{Type.getInternalName(CompiledRoutes.class)});
+            writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "charClasses", "[[I", null, null).visitEnd();
+            generateConstructor(writer);
+            generateNext(writer);
+            writer.visitEnd();
+
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(writer.toByteArray(), true);
+            return (CompiledRoutes) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, int[][].class))
+                    .invoke((Object) charClasses.toArray(new int[0][]));
+        } catch (Throwable e) {
+            logger.warn("Could not generate the matcher of {} routes, matching them one by one", routes.length, e);
+            return null;
+        }
+    }
+
+    private void generateConstructor(ClassWriter writer) {
+        MethodVisitor mv = writer.visitMethod(0, "<init>", "([[I)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, GENERATED, "charClasses", "[[I");
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Generates {@link CompiledRoutes#next}: a switch on the segment count, each branch calling the methods of its
+     * candidates. The interpreted routes are candidates of every branch.
+     */
+    private void generateNext(ClassWriter writer) {
+        List<Integer> interpreted = new ArrayList<>();
+        Map<Integer, List<Integer>> bySegmentCount = new TreeMap<>();
+        for (int position = 0; position < routes.length; position++) {
+            if (checks[position] == null) {
+                interpreted.add(position);
+            } else {
+                bySegmentCount.computeIfAbsent(checks[position].length, k -> new ArrayList<>()).add(position);
+            }
+        }
+        MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "next", NEXT_DESC, null, null);
+        mv.visitCode();
+        int[] counts = bySegmentCount.keySet().stream().mapToInt(Integer::intValue).toArray();
+        Label[] branches = new Label[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            branches[i] = new Label();
+        }
+        Label otherCounts = new Label();
+        mv.visitVarInsn(Opcodes.ILOAD, 5);
+        mv.visitLookupSwitchInsn(otherCounts, counts, branches);
+        for (int i = 0; i < counts.length; i++) {
+            mv.visitLabel(branches[i]);
+            String group = generateGroup(writer, "count" + counts[i], bySegmentCount.get(counts[i]), interpreted);
+            invokeCandidates(mv, group);
+            mv.visitInsn(Opcodes.IRETURN);
+        }
+        mv.visitLabel(otherCounts);
+        invokeCandidates(mv, generateCandidates(writer, "otherCounts", interpreted));
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Generates the method searching the routes with the same segment count, switching on the hash of the
+     * segment holding the most distinct literals.
+     *
+     * @return the name of the method
+     */
+    private String generateGroup(ClassWriter writer, String name, List<Integer> group, List<Integer> interpreted) {
+        int segmentCount = checks[group.get(0)].length;
+        int discriminant = -1;
+        int mostLiterals = 0;
+        for (int i = 0; i < segmentCount; i++) {
+            Set<String> literals = new HashSet<>();
+            for (int position : group) {
+                if (checks[position][i].literal != null) literals.add(checks[position][i].literal);
+            }
+            if (literals.size() > mostLiterals) {
+                mostLiterals = literals.size();
+                discriminant = i;
+            }
+        }
+        if (discriminant < 0) {
+            return generateCandidates(writer, name, merge(group, interpreted));
+        }
+        Map<Integer, List<Integer>> byHash = new TreeMap<>();
+        List<Integer> withoutLiteral = new ArrayList<>();
+        for (int position : group) {
+            String literal = checks[position][discriminant].literal;
+            if (literal != null) {
+                byHash.computeIfAbsent(literal.hashCode(), k -> new ArrayList<>()).add(position);
+            } else {
+                withoutLiteral.add(position);
+            }
+        }
+        List<Integer> others = merge(withoutLiteral, interpreted);
+        Map<Integer, String> cases = new LinkedHashMap<>();
+        for (Map.Entry<Integer, List<Integer>> entry : byHash.entrySet()) {
+            cases.put(entry.getKey(), generateCandidates(writer, name + "_" + (cases.size() + 1), merge(entry.getValue(), others)));
+        }
+        String otherHashes = generateCandidates(writer, name + "_0", others);
+
+        MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PRIVATE, name, CANDIDATES_DESC, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        loadBound(mv, 3, discriminant);
+        loadBound(mv, 4, discriminant);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, SELF, "hash", "(Ljava/lang/String;II)I", false);
+        int[] hashes = cases.keySet().stream().mapToInt(Integer::intValue).toArray();
+        Label[] branches = new Label[hashes.length];
+        for (int i = 0; i < hashes.length; i++) {
+            branches[i] = new Label();
+        }
+        Label otherHash = new Label();
+        mv.visitLookupSwitchInsn(otherHash, hashes, branches);
+        for (int i = 0; i < hashes.length; i++) {
+            mv.visitLabel(branches[i]);
+            invokeCandidates(mv, cases.get(hashes[i]), 5);
+            mv.visitInsn(Opcodes.IRETURN);
+        }
+        mv.visitLabel(otherHash);
+        invokeCandidates(mv, otherHashes, 5);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        return name;
+    }
+
+    /**
+     * Generates the methods checking candidate routes in order, split in chunks of
+     * {@value #CANDIDATES_PER_METHOD}.
+     *
+     * @return the name of the method checking all the candidates
+     */
+    private String generateCandidates(ClassWriter writer, String name, List<Integer> candidates) {
+        List<String> chunks = new ArrayList<>();
+        for (int from = 0; from < candidates.size(); from += CANDIDATES_PER_METHOD) {
+            String chunk = name + "$" + chunks.size();
+            MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PRIVATE, chunk, CANDIDATES_DESC, null, null);
+            mv.visitCode();
+            for (int position : candidates.subList(from, Math.min(candidates.size(), from + CANDIDATES_PER_METHOD))) {
+                generateCandidate(mv, position);
+            }
+            mv.visitInsn(Opcodes.ICONST_M1);
+            mv.visitInsn(Opcodes.IRETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+            chunks.add(chunk);
+        }
+        MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PRIVATE, name, CANDIDATES_DESC, null, null);
+        mv.visitCode();
+        for (String chunk : chunks) {
+            Label notFound = new Label();
+            invokeCandidates(mv, chunk, 5);
+            mv.visitVarInsn(Opcodes.ISTORE, 6);
+            mv.visitVarInsn(Opcodes.ILOAD, 6);
+            mv.visitJumpInsn(Opcodes.IFLT, notFound);
+            mv.visitVarInsn(Opcodes.ILOAD, 6);
+            mv.visitInsn(Opcodes.IRETURN);
+            mv.visitLabel(notFound);
+        }
+        mv.visitInsn(Opcodes.ICONST_M1);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        return name;
+    }
+
+    /**
+     * Generates the checks of a candidate route, returning its position when they pass.
+     */
+    private void generateCandidate(MethodVisitor mv, int position) {
+        Label skip = new Label();
+        mv.visitVarInsn(Opcodes.ILOAD, 5);
+        push(mv, position);
+        mv.visitJumpInsn(Opcodes.IF_ICMPGT, skip);
+        generateMethodCheck(mv, routes[position].method, skip);
+        Check[] segments = checks[position];
+        for (int i = 0; segments != null && i < segments.length; i++) {
+            Check check = segments[i];
+            if (check.literal != null) {
+                loadBound(mv, 4, i);
+                loadBound(mv, 3, i);
+                mv.visitInsn(Opcodes.ISUB);
+                push(mv, check.literal.length());
+                mv.visitJumpInsn(Opcodes.IF_ICMPNE, skip);
+                if (!check.literal.isEmpty()) {
+                    mv.visitVarInsn(Opcodes.ALOAD, 2);
+                    loadBound(mv, 3, i);
+                    mv.visitLdcInsn(check.literal);
+                    mv.visitInsn(Opcodes.ICONST_0);
+                    push(mv, check.literal.length());
+                    mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STRING, "regionMatches", "(ILjava/lang/String;II)Z", false);
+                    mv.visitJumpInsn(Opcodes.IFEQ, skip);
+                }
+            } else if (check.charClass < 0) {
+                loadBound(mv, 4, i);
+                loadBound(mv, 3, i);
+                mv.visitInsn(Opcodes.ISUB);
+                mv.visitJumpInsn(Opcodes.IFLE, skip);
+            } else {
+                mv.visitVarInsn(Opcodes.ALOAD, 2);
+                loadBound(mv, 3, i);
+                loadBound(mv, 4, i);
+                mv.visitVarInsn(Opcodes.ALOAD, 0);
+                mv.visitFieldInsn(Opcodes.GETFIELD, GENERATED, "charClasses", "[[I");
+                push(mv, check.charClass);
+                mv.visitInsn(Opcodes.AALOAD);
+                push(mv, check.min);
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, SELF, "matchesClass", "(Ljava/lang/String;II[II)Z", false);
+                mv.visitJumpInsn(Opcodes.IFEQ, skip);
+            }
+        }
+        push(mv, position);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitLabel(skip);
+    }
+
+    /**
+     * Same as {@link Route#matchesMethod(String)}.
+     */
+    private void generateMethodCheck(MethodVisitor mv, String routeMethod, Label skip) {
+        if ("*".equals(routeMethod)) return;
+        Label accepted = new Label();
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitJumpInsn(Opcodes.IFNULL, accepted);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitLdcInsn(routeMethod);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STRING, "equalsIgnoreCase", "(Ljava/lang/String;)Z", false);
+        mv.visitJumpInsn(Opcodes.IFNE, accepted);
+        if ("get".equalsIgnoreCase(routeMethod)) {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitLdcInsn("head");
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STRING, "equalsIgnoreCase", "(Ljava/lang/String;)Z", false);
+            mv.visitJumpInsn(Opcodes.IFNE, accepted);
+        }
+        mv.visitJumpInsn(Opcodes.GOTO, skip);
+        mv.visitLabel(accepted);
+    }
+
+    /**
+     * Calls a candidates method from {@code next}, where {@code from} is the 7th local.
+     */
+    private static void invokeCandidates(MethodVisitor mv, String name) {
+        invokeCandidates(mv, name, 6);
+    }
+
+    private static void invokeCandidates(MethodVisitor mv, String name, int fromLocal) {
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitVarInsn(Opcodes.ALOAD, 3);
+        mv.visitVarInsn(Opcodes.ALOAD, 4);
+        mv.visitVarInsn(Opcodes.ILOAD, fromLocal);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, GENERATED, name, CANDIDATES_DESC, false);
+    }
+
+    private static void loadBound(MethodVisitor mv, int arrayLocal, int segment) {
+        mv.visitVarInsn(Opcodes.ALOAD, arrayLocal);
+        push(mv, segment);
+        mv.visitInsn(Opcodes.IALOAD);
+    }
+
+    private static void push(MethodVisitor mv, int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private static List<Integer> merge(List<Integer> a, List<Integer> b) {
+        TreeSet<Integer> merged = new TreeSet<>(a);
+        merged.addAll(b);
+        return new ArrayList<>(merged);
+    }
+
+    /**
+     * Inlined check of a segment: a literal, or an argument stored in a slot of {@link Route#argNames}, with its
+     * character class (-1 for the default constraint) and its minimum length.
+     */
+    private record Check(String literal, int charClass, int min, int slot) {
+    }
+}
@@ -23,6 +23,19 @@ public class HTTPRequestAdapter {
 
     private static final Logger logger = LoggerFactory.getLogger(HTTPRequestAdapter.class);
 
+    /**
+     * Name of the request attribute holding the adapter of the current request, see {@link #getCurrent()}
+     */
+    public static final String REQUEST_ATTRIBUTE = HTTPRequestAdapter.class.getName() + ".CURRENT";
+
+    /**
+     * Maximum number of cached request bases, an application serves few schemes, domains and ports. The domain comes
+     * from the Host header, the least recently used bases are evicted so unknown domains can't take the place of the
+     * served ones.
+     */
+    static final int MAX_CACHED_BASES = 64;
+    private static final LruCache<Base, String> bases = new LruCache<>(MAX_CACHED_BASES);
+
     /**
      * Server host
      */
@@ -72,7 +85,8 @@ public class HTTPRequestAdapter {
      */
     public Integer port;
     /**
-     * HTTP Headers
+     * HTTP Headers, by lower case name. Read from the servlet request when asked for in a parsed request, so only
+     * while the request is processed unless the adapter is {@link #detach() detached}
      */
     public Map<String, HTTPRequestAdapter.Header> headers = new HashMap<String, HTTPRequestAdapter.Header>();
     /**
@@ -80,17 +94,33 @@ public class HTTPRequestAdapter {
      */
     public Map<String, String> routeArgs;
     /**
-     * Format (html,xml,json,text)
+     * Format (html,xml,json,text): the preferred acceptable type, then the type of the matching route
      */
     public MediaType accept = null;
+    /**
+     * The acceptable types of the Accept header, by decreasing preference, null when the request wasn't parsed
+     */
+    public List<MediaType> acceptedTypes;
     /**
      * Request content-type
      */
     public MediaType contentType = null;
+    /**
+     * The route matching the request, null until the request is routed
+     */
+    public Router.Route route;
     /**
      * Full action (ex: Application.index)
      */
     public String action;
+    /**
+     * The {@link ActionTemplate#key(Map) key} of the route arguments when the route has an action template
+     */
+    public Object actionKey;
+    /**
+     * True when a HEAD request was routed to a GET route, no HEAD route matching it
+     */
+    public boolean headRoutedToGet = false;
     /**
      * The really invoker Java methid
      */
@@ -122,6 +152,15 @@ public class HTTPRequestAdapter {
         this.accept = _format;
     }
 
+    /**
+     * @return the types to negotiate the route with: the {@link #acceptedTypes}, unless {@link #accept} was changed
+     * since the request was parsed
+     */
+    List<MediaType> negotiatedTypes() {
+        if (acceptedTypes != null && !acceptedTypes.isEmpty() && acceptedTypes.get(0) == accept) return acceptedTypes;
+        return Collections.singletonList(accept);
+    }
+
     public boolean isSecure() {
         return secure;
     }
@@ -152,18 +191,28 @@ public class HTTPRequestAdapter {
      * @return the request base of the url (protocol, host and port)
      */
     public String getBase() {
-        if (port == 80 || port == 443) {
-            return String.format("%s://%s", secure ? "https" : "http", domain).intern();
+        return bases.get(new Base(secure, domain, port), Base::format);
+    }
+
+    /**
+     * The parts of the request base, the key of the cached bases
+     */
+    private record Base(boolean secure, String domain, Integer port) {
+
+        String format() {
+            String scheme = secure ? "https://" : "http://";
+            if (port == 80 || port == 443) {
+                return scheme + domain;
+            }
+            return scheme + domain + ':' + port;
         }
-        return String.format("%s://%s:%s", secure ? "https" : "http", domain,
-                port).intern();
     }
 
     public static HTTPRequestAdapter parseRequest(
             HttpServletRequest httpServletRequest) {
         HTTPRequestAdapter request = new HTTPRequestAdapter();
 
-        request.method = httpServletRequest.getMethod().intern();
+        request.method = httpServletRequest.getMethod();
         request.path = httpServletRequest.getPathInfo() != null ? httpServletRequest.getPathInfo() : httpServletRequest.getServletPath();
         request.servletPath = httpServletRequest.getServletPath() != null ? httpServletRequest.getServletPath() : "";
         request.contextPath = httpServletRequest.getContextPath() != null ? httpServletRequest.getContextPath() : "";
@@ -173,24 +222,22 @@ public class HTTPRequestAdapter {
         logger.trace("contextPath: {}  servletPath: {}", request.contextPath, request.servletPath);
         logger.trace("request.path: {}, request.queryString: {}", request.path, request.getQueryString());
 
-        if (httpServletRequest.getHeader("Content-Type") != null) {
-            request.contentType = resolveFormat(httpServletRequest.getHeader("Content-Type").split(";")[0].trim().toLowerCase().intern());
-        } else {
-            request.contentType = resolveFormat(MediaType.ALL_VALUE);
-        }
+        request.contentType = MediaTypeHeaders.parseContentType(httpServletRequest.getHeader("Content-Type"));
 
-        if (httpServletRequest.getHeader("X-HTTP-Method-Override") != null) {
-            request.method = httpServletRequest.getHeader(
-                    "X-HTTP-Method-Override").intern();
+        String methodOverride = httpServletRequest.getHeader("X-HTTP-Method-Override");
+        if (methodOverride != null) {
+            request.method = methodOverride;
         }
 
         request.setSecure(httpServletRequest.isSecure());
 
         request.url = httpServletRequest.getRequestURI();
         request.host = httpServletRequest.getHeader("host");
-        if (request.host != null && request.host.contains(":")) {
-            request.port = Integer.parseInt(request.host.split(":")[1]);
-            request.domain = request.host.split(":")[0];
+        int portSeparator = request.host != null ? request.host.indexOf(':') : -1;
+        if (portSeparator >= 0) {
+            int portEnd = request.host.indexOf(':', portSeparator + 1);
+            request.port = Integer.parseInt(portEnd < 0 ? request.host.substring(portSeparator + 1) : request.host.substring(portSeparator + 1, portEnd));
+            request.domain = request.host.substring(0, portSeparator);
         } else {
             request.port = 80;
             request.domain = request.host;
@@ -198,32 +245,42 @@ public class HTTPRequestAdapter {
 
         request.remoteAddress = httpServletRequest.getRemoteAddr();
 
-        Enumeration<String> headersNames = httpServletRequest.getHeaderNames();
-        while (headersNames.hasMoreElements()) {
-            HTTPRequestAdapter.Header hd = new Header();
-            hd.name = headersNames.nextElement();
-            hd.values = new ArrayList<>();
-            Enumeration<String> enumValues = httpServletRequest.getHeaders(hd.name);
-            while (enumValues.hasMoreElements()) {
-                String value = enumValues.nextElement();
-                hd.values.add(value);
-            }
-            request.headers.put(hd.name.toLowerCase(), hd);
-        }
-
-        request.accept = resolveFormat(request.headers.getOrDefault("accept", new Header()).value());
+        // the other headers are only read when asked for
+        request.headers = new RequestHeaders(httpServletRequest);
+        request.acceptedTypes = MediaTypeHeaders.parseAccept(httpServletRequest.getHeader("Accept"));
+        request.accept = request.acceptedTypes.get(0);
 
         return request;
     }
 
+	/**
+	 * @return the adapter of the current request: the one built when the request was routed, or a new one parsed
+	 * once and kept in the {@link #REQUEST_ATTRIBUTE} request attribute. Like the servlet request, it is only valid
+	 * while the request is processed, see {@link #detach()}
+	 */
 	public static HTTPRequestAdapter getCurrent() {
 		RequestAttributes requestAttributes = RequestContextHolder.currentRequestAttributes();
 		Assert.notNull(requestAttributes, "Could not find current request via RequestContextHolder");
 		HttpServletRequest servletRequest = ((ServletRequestAttributes) requestAttributes).getRequest();
 		Assert.state(servletRequest != null, "Could not find current HttpServletRequest");
-		return HTTPRequestAdapter.parseRequest(servletRequest);
+		if (servletRequest.getAttribute(REQUEST_ATTRIBUTE) instanceof HTTPRequestAdapter current) {
+			return current;
+		}
+		HTTPRequestAdapter request = HTTPRequestAdapter.parseRequest(servletRequest);
+		servletRequest.setAttribute(REQUEST_ATTRIBUTE, request);
+		return request;
 	}
 
+    /**
+     * Reads the headers not read yet from the servlet request, so the adapter can still be used once the request is
+     * over and the servlet request recycled, e.g. by a task completing the request asynchronously.
+     */
+    public void detach() {
+        if (headers instanceof RequestHeaders lazy) {
+            headers = new HashMap<>(lazy);
+        }
+    }
+
     /**
      * Automatically resolve request format from the Accept header (in this
      * order : html > xml > json > text)
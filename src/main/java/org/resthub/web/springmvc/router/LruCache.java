@@ -0,0 +1,95 @@
+package org.resthub.web.springmvc.router;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Small bounded cache of the values parsed or resolved from the requests, evicting the least recently used entries so
+ * the values sent by the clients can't fill it for good.
+ * <p>
+ * Like {@link RouteMatchCache}, the cache is split in stripes, each one a synchronized access ordered map.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ */
+public final class LruCache<K, V> {
+
+    private static final int MAX_STRIPES = 16;
+    private static final int MIN_ENTRIES_PER_STRIPE = 16;
+
+    private final Stripe<K, V>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    public LruCache(int maxSize) {
+        int stripeCount = Math.max(1, Math.min(MAX_STRIPES, maxSize / MIN_ENTRIES_PER_STRIPE));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>((maxSize + stripeCount - 1) / stripeCount);
+        }
+    }
+
+    /**
+     * @param key     the key of the value
+     * @param compute computes the value when it isn't cached, outside the lock
+     * @return the cached or computed value
+     */
+    public V get(K key, Function<K, V> compute) {
+        V value = get(key);
+        if (value == null) {
+            value = compute.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * @return the cached value, null if it isn't cached
+     */
+    public V get(K key) {
+        Stripe<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
+    }
+
+    /**
+     * Caches a value, evicting the least recently used value of its stripe when the stripe is full.
+     */
+    public void put(K key, V value) {
+        Stripe<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.put(key, value);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe<K, V> stripe(K key) {
+        int hash = key.hashCode();
+        return stripes[((hash ^ (hash >>> 16)) & 0x7fffffff) % stripes.length];
+    }
+
+    private static final class Stripe<K, V> extends LinkedHashMap<K, V> {
+
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
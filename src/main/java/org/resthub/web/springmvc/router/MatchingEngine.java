@@ -0,0 +1,55 @@
+package org.resthub.web.springmvc.router;
+
+import org.resthub.web.springmvc.router.Router.Route;
+
+import java.util.List;
+
+/**
+ * The algorithms available to find the route matching a request. All of them give the same result: the first
+ * route, in declaration order, matching the request.
+ *
+ * @see Router#setEngine(MatchingEngine)
+ */
+public enum MatchingEngine implements RouteMatcher.Factory {
+
+    /**
+     * Segment trie, with a hash of the static routes in front of it
+     */
+    TRIE,
+    /**
+     * Tries each route of the method bucket one after the other
+     */
+    LINEAR,
+    /**
+     * One regex per method bucket, alternating the patterns of all the routes, so a single regex pass finds the
+     * first route matching the path
+     */
+    ALTERNATION,
+    /**
+     * A class generated when the routes are loaded, switching on the segment count and on the segment hashes with
+     * inlined checks of the routes, the routes using other regex constructs are matched by their pattern
+     */
+    COMPILED,
+    /**
+     * Spring's {@link org.springframework.web.util.pattern.PathPattern} for the routes it can express, behind the
+     * segment trie, the other routes are matched by their regex
+     */
+    PATH_PATTERN,
+    /**
+     * The segment trie, matching the regex routes in linear time with {@link SafePattern}. The routes using a
+     * construct it doesn't support, reported when the routes are loaded, are matched by their regex
+     */
+    SAFE;
+
+    @Override
+    public RouteMatcher create(List<Route> routes) {
+        return new RouteIndex(routes, this);
+    }
+
+    /**
+     * Case insensitive {@link #valueOf(String)}, accepting {@code -} for {@code _}.
+     */
+    public static MatchingEngine fromName(String name) {
+        return valueOf(name.trim().replace('-', '_').toUpperCase(java.util.Locale.ROOT));
+    }
+}
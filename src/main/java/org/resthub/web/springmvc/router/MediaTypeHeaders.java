@@ -0,0 +1,135 @@
+package org.resthub.web.springmvc.router;
+
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parses the media type headers of the requests.
+ * <p>
+ * The {@code Accept} header is parsed as of RFC 7231 section 5.3.2: the media ranges, their parameters and their
+ * quality values.
+ * The ranges are returned by decreasing preference: quality first, then specificity ({@code text/html;level=1} before
+ * {@code text/html} before {@code text/*} before {@code *}{@code /*}), then header order. The ranges with a
+ * zero quality are not acceptable and dropped, so are the malformed ones. The quality parameter is removed and the
+ * types {@link HTTPRequestAdapter#resolveFormat(String)} knows are replaced by their constant, so the routes compare
+ * them with a bit test.
+ * <p>
+ * The {@code Content-Type} header is resolved by {@link HTTPRequestAdapter#resolveFormat(String)}, without its
+ * parameters.
+ * <p>
+ * The clients send few distinct headers, the results are cached by header value, the least recently used values being
+ * evicted.
+ */
+final class MediaTypeHeaders {
+
+    /**
+     * Maximum number of cached header values
+     */
+    static final int MAX_CACHED_HEADERS = 256;
+
+    private static final List<MediaType> ANY = List.of(MediaType.ALL);
+    private static final Comparator<MediaType> PREFERENCE = Comparator
+            .comparingDouble(MediaType::getQualityValue).reversed()
+            .thenComparing(Comparator.comparingInt(MediaTypeHeaders::specificity).reversed());
+
+    private static final LruCache<String, List<MediaType>> accepts = new LruCache<>(MAX_CACHED_HEADERS);
+    private static final LruCache<String, MediaType> contentTypes = new LruCache<>(MAX_CACHED_HEADERS);
+
+    private MediaTypeHeaders() {
+    }
+
+    /**
+     * @param header the value of the {@code Accept} header, may be null
+     * @return the acceptable media types, by decreasing preference, {@code *}{@code /*} when the header is missing,
+     * empty or malformed
+     */
+    static List<MediaType> parseAccept(String header) {
+        if (header == null) return ANY;
+        return accepts.get(header, MediaTypeHeaders::doParseAccept);
+    }
+
+    /**
+     * @param header the value of the {@code Content-Type} header, may be null
+     * @return the resolved media type, {@code *}{@code /*} when the header is missing
+     */
+    static MediaType parseContentType(String header) {
+        if (header == null) return MediaType.ALL;
+        return contentTypes.get(header, MediaTypeHeaders::doParseContentType);
+    }
+
+    private static MediaType doParseContentType(String header) {
+        int parameters = header.indexOf(';');
+        return HTTPRequestAdapter.resolveFormat((parameters < 0 ? header : header.substring(0, parameters)).trim().toLowerCase());
+    }
+
+    private static List<MediaType> doParseAccept(String header) {
+        List<MediaType> ranges = new ArrayList<>();
+        for (String token : tokenize(header)) {
+            try {
+                MediaType range = MediaType.parseMediaType(token);
+                if (range.getQualityValue() > 0) ranges.add(range);
+            } catch (IllegalArgumentException e) {
+                // a malformed range, InvalidMediaTypeException included, is ignored, the others still apply
+            }
+        }
+        if (ranges.isEmpty()) return ANY;
+        ranges.sort(PREFERENCE);
+        Set<MediaType> types = new LinkedHashSet<>();
+        for (MediaType range : ranges) {
+            types.add(canonical(range));
+        }
+        return List.copyOf(types);
+    }
+
+    /**
+     * Splits the header on the commas outside of the quoted parameter values.
+     */
+    private static List<String> tokenize(String header) {
+        List<String> tokens = new ArrayList<>();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < header.length(); i++) {
+            char c = header.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '\\' && quoted) {
+                i++;
+            } else if (c == ',' && !quoted) {
+                addToken(tokens, header.substring(start, i));
+                start = i + 1;
+            }
+        }
+        addToken(tokens, header.substring(start));
+        return tokens;
+    }
+
+    private static void addToken(List<String> tokens, String token) {
+        String trimmed = token.trim();
+        if (!trimmed.isEmpty()) tokens.add(trimmed);
+    }
+
+    /**
+     * @return the rank of the range: {@code *}{@code /*}, then {@code type/*}, then the concrete types, each one
+     * ordered by number of parameters
+     */
+    private static int specificity(MediaType range) {
+        int rank = range.isWildcardType() ? 0 : range.isWildcardSubtype() ? 1 : 2;
+        int parameters = range.getParameters().size() - (range.getParameter("q") != null ? 1 : 0);
+        return rank * 1024 + Math.min(parameters, 1023);
+    }
+
+    /**
+     * @return the range without quality, or the constant of the known type it stands for
+     */
+    private static MediaType canonical(MediaType range) {
+        MediaType type = range.removeQualityValue();
+        if (type.isWildcardType()) return MediaType.ALL;
+        MediaType known = HTTPRequestAdapter.resolveFormat(type.toString());
+        return known != MediaType.ALL ? known : type;
+    }
+}
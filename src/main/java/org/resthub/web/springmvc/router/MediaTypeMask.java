@@ -0,0 +1,76 @@
+package org.resthub.web.springmvc.router;
+
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+/**
+ * Compact form of the media types of a route.
+ * <p>
+ * The media types produced by {@link HTTPRequestAdapter#resolveFormat(String)}, both for the requests and the
+ * routes, get a small integer id. For each route, the answers of {@link MediaType#includes(MediaType)} against every
+ * known type are computed once in a bitmask, so the negotiation of a known request type is a bit test. Other types
+ * go through {@link MediaType#includes(MediaType)}.
+ */
+final class MediaTypeMask {
+
+    private static final MediaType[] KNOWN = {
+            MediaType.ALL,
+            MediaType.APPLICATION_FORM_URLENCODED,
+            MediaType.TEXT_HTML,
+            MediaType.APPLICATION_XML,
+            MediaType.TEXT_PLAIN,
+            MediaType.APPLICATION_JSON
+    };
+
+    /**
+     * Mask of a route without media type restriction
+     */
+    static final int ANY = -1;
+
+    private MediaTypeMask() {
+    }
+
+    /**
+     * @return the id of a known media type, or -1 for any other type
+     */
+    static int id(MediaType mediaType) {
+        for (int i = 0; i < KNOWN.length; i++) {
+            if (KNOWN[i] == mediaType) return i;
+        }
+        for (int i = 0; i < KNOWN.length; i++) {
+            if (KNOWN[i].equals(mediaType)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @param produced the types a route can return
+     * @return the mask of the known requested types included in one of the produced types
+     */
+    static int ofAccepts(List<MediaType> produced) {
+        if (produced.isEmpty()) return ANY;
+        int mask = 0;
+        for (int i = 0; i < KNOWN.length; i++) {
+            for (MediaType mediaType : produced) {
+                if (mediaType.includes(KNOWN[i])) mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @param consumed the types a route can receive
+     * @return the mask of the known request content types including one of the consumed types
+     */
+    static int ofContentTypes(List<MediaType> consumed) {
+        if (consumed.isEmpty()) return ANY;
+        int mask = 0;
+        for (int i = 0; i < KNOWN.length; i++) {
+            for (MediaType mediaType : consumed) {
+                if (KNOWN[i].includes(mediaType)) mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,41 @@
+package org.resthub.web.springmvc.router;
+
+import org.springframework.http.MediaType;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Server driven negotiation of the route of a request: the first route, in declaration order, returning the most
+ * preferred acceptable type.
+ * <p>
+ * Rather than looking the routes up once per acceptable type, the routes are first looked up without accepted type.
+ * As the accepted type only excludes routes, a request matching no route this way matches none at all, and when the
+ * route found returns a type it is the route of that type. The other types are looked up one by one, until one is
+ * matched.
+ *
+ * @param match  the route matched, with its arguments
+ * @param accept the acceptable type the route was matched for
+ */
+record Negotiation(RouteMatch match, MediaType accept) {
+
+    /**
+     * @param accepted the acceptable types, by decreasing preference
+     * @param lookup   finds the first route of the request for an acceptable type, null for any type
+     * @return the negotiated route, null if no route matches an acceptable type
+     */
+    static Negotiation of(List<MediaType> accepted, Function<MediaType, RouteMatch> lookup) {
+        if (accepted.size() == 1) {
+            RouteMatch match = lookup.apply(accepted.get(0));
+            return match != null ? new Negotiation(match, accepted.get(0)) : null;
+        }
+        RouteMatch first = lookup.apply(null);
+        if (first == null) return null;
+        for (MediaType accept : accepted) {
+            if (first.getRoute().canReturnMediaType(accept)) return new Negotiation(first, accept);
+            RouteMatch match = lookup.apply(accept);
+            if (match != null) return new Negotiation(match, accept);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,120 @@
+package org.resthub.web.springmvc.router;
+
+import org.resthub.web.springmvc.router.Router.Route;
+import org.resthub.web.springmvc.router.Router.Route.Segment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches the route paths with Spring's {@link PathPattern}, the routes being narrowed down by a {@link RouteTrie}.
+ * <p>
+ * A route is translated when each segment of its path is a non empty literal or a single argument, constrained by
+ * {@value Route#DEFAULT_CONSTRAINT} ({@code {name}}) or a plain character class with a {@code +} quantifier
+ * ({@code {name:[0-9]+}}), the constructs both syntaxes give the same meaning. The request path is parsed once in a
+ * {@link PathContainer} shared by all the candidates. The other routes keep their jregex pattern, and so do all the
+ * routes for a path holding characters a {@link PathContainer} interprets ({@code ;} path parameters,
+ * {@code %} encoding, empty segments).
+ *
+ * @see MatchingEngine#PATH_PATTERN
+ */
+final class PathPatternMatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(PathPatternMatcher.class);
+
+    private final RouteTrie trie;
+    /**
+     * The translated pattern of each route, by trie position, null for a route matched by jregex
+     */
+    private final PathPattern[] patterns;
+    /**
+     * True if the request host is checked before the routes are matched
+     */
+    private final boolean hostChecked;
+
+    PathPatternMatcher(List<Route> routes, boolean hostChecked) {
+        this.trie = new RouteTrie(routes);
+        this.hostChecked = hostChecked;
+        this.patterns = new PathPattern[trie.size()];
+        PathPatternParser parser = new PathPatternParser();
+        for (int position = 0; position < trie.size(); position++) {
+            Route route = trie.route(position);
+            String pattern = toPathPattern(route);
+            if (pattern == null) continue;
+            try {
+                patterns[position] = parser.parse(pattern);
+            } catch (IllegalArgumentException e) {
+                logger.debug("Route {} can't be matched by the path pattern {}, keeping its regex", route, pattern, e);
+            }
+        }
+    }
+
+    /**
+     * @return the path pattern equivalent to the path of the route, or null if there is none
+     */
+    static String toPathPattern(Route route) {
+        if (route.segments == null) return null;
+        if ("/".equals(route.path)) return "/";
+        StringBuilder pattern = new StringBuilder();
+        for (Segment segment : route.segments) {
+            pattern.append('/');
+            if (segment.literal != null) {
+                if (segment.literal.isEmpty() || !isPlainPath(segment.literal)) return null;
+                pattern.append(segment.literal);
+            } else if (segment.argName == null) {
+                return null;
+            } else if (Route.DEFAULT_CONSTRAINT.equals(segment.constraint)) {
+                pattern.append('{').append(segment.argName).append('}');
+            } else if (segment.constraint.endsWith("+") && PathRegex.charClass(segment.constraint) != null
+                    && segment.constraint.indexOf('{') < 0 && segment.constraint.indexOf('}') < 0) {
+                pattern.append('{').append(segment.argName).append(':').append(segment.constraint).append('}');
+            } else {
+                return null;
+            }
+        }
+        return pattern.toString();
+    }
+
+    /**
+     * @return true if the path means the same to a {@link PathContainer} and to a regex: no path parameter, no
+     * encoded character and no empty segment
+     */
+    private static boolean isPlainPath(String path) {
+        return path.indexOf(';') < 0 && path.indexOf('%') < 0 && !path.contains("//");
+    }
+
+    RouteMatch match(String method, String path, MediaType accept, MediaType contentType, String host) {
+        PathContainer container = path.startsWith("/") && isPlainPath(path) ? PathContainer.parsePath(path) : null;
+        for (int position : trie.candidates(path)) {
+            Route route = trie.route(position);
+            PathPattern pattern = patterns[position];
+            if (pattern == null || container == null) {
+                Map<String, String> args = route.matches(method, path, accept, contentType, host, hostChecked);
+                if (args != null) return new RouteMatch(route, args);
+                continue;
+            }
+            if (!route.matchesMethod(method)) continue;
+            PathPattern.PathMatchInfo info = pattern.matchAndExtract(container);
+            if (info != null && route.matchesRequest(accept, contentType, host, hostChecked)) {
+                return new RouteMatch(route, args(route, info.getUriVariables(), host));
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, String> args(Route route, Map<String, String> variables, String host) {
+        String[] values = null;
+        for (int i = 0; i < route.argSlots.length; i++) {
+            if (route.argSlots[i] < 0) continue;
+            if (values == null) values = route.argValues.clone();
+            values[route.argSlots[i]] = variables.get(route.args.get(i).name);
+        }
+        return route.extractArgs(null, "", values, host);
+    }
+}
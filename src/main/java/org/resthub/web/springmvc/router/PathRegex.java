@@ -0,0 +1,168 @@
+package org.resthub.web.springmvc.router;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Static analysis helpers over the regex fragments found in a route path.
+ * <p>
+ * The checks are conservative: when a fragment uses a construct that isn't understood it is reported as unsafe, and
+ * the callers then keep the route on the full jregex path.
+ */
+final class PathRegex {
+
+    private static final String META_CHARS = "\\.[]{}()*+?^$|";
+
+    private PathRegex() {
+    }
+
+    /**
+     * @return true if the text has no regex meta character, so it only matches itself
+     */
+    static boolean isLiteral(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (META_CHARS.indexOf(text.charAt(i)) >= 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks that a regex fragment can never match a '/' and that it is self contained (balanced groups, no top
+     * level alternation, no anchors, no leading quantifier), so it can be evaluated against a single path segment.
+     *
+     * @param regex the fragment to check
+     * @return true if the fragment is bound to one segment
+     */
+    static boolean isSegmentBound(String regex) {
+        if (!regex.isEmpty() && "?*+".indexOf(regex.charAt(0)) >= 0) return false;
+        int depth = 0;
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            switch (c) {
+                case '\\' -> {
+                    if (i + 1 >= regex.length() || !isSafeEscape(regex.charAt(i + 1))) return false;
+                    i += 2;
+                }
+                case '[' -> {
+                    i = skipClass(regex, i);
+                    if (i < 0) return false;
+                }
+                case '(' -> {
+                    depth++;
+                    i++;
+                }
+                case ')' -> {
+                    if (--depth < 0) return false;
+                    i++;
+                }
+                case '|' -> {
+                    if (depth == 0) return false;
+                    i++;
+                }
+                case '.', '/', '^', '$' -> {
+                    return false;
+                }
+                default -> i++;
+            }
+        }
+        return depth == 0;
+    }
+
+    /**
+     * @return true if the escaped char can't stand for a '/'
+     */
+    private static boolean isSafeEscape(char escaped) {
+        if (escaped == '/') return false;
+        if (!Character.isLetterOrDigit(escaped)) return true;
+        return "dwsbBntrfae".indexOf(escaped) >= 0;
+    }
+
+    /**
+     * Skips a character class, checking that it can't match a '/'.
+     *
+     * @return the index after the class, or -1 if the class may match a '/' or isn't understood
+     */
+    private static int skipClass(String regex, int start) {
+        int i = start + 1;
+        boolean negated = i < regex.length() && regex.charAt(i) == '^';
+        if (negated) i++;
+        boolean slash = false;
+        boolean first = true;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == ']' && !first) {
+                return negated == slash ? i + 1 : -1;
+            }
+            first = false;
+            char from;
+            if (c == '\\') {
+                if (i + 1 >= regex.length()) return -1;
+                char escaped = regex.charAt(i + 1);
+                // \D, \W, \S (which contain the '/'), unicode and octal escapes aren't supported
+                if (Character.isLetterOrDigit(escaped) && "dwsntrfae".indexOf(escaped) < 0) {
+                    return -1;
+                }
+                from = Character.isLetterOrDigit(escaped) ? 0 : escaped;
+                i += 2;
+            } else if (c == '[') {
+                return -1;
+            } else {
+                from = c;
+                i++;
+            }
+            if (i + 1 < regex.length() && regex.charAt(i) == '-' && regex.charAt(i + 1) != ']') {
+                char to = regex.charAt(i + 1);
+                if (to == '\\' || to == '[') return -1;
+                if (from == 0) return -1;
+                if (from <= '/' && '/' <= to) slash = true;
+                i += 2;
+            } else if (from == '/') {
+                slash = true;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a constraint made of a character class and a {@code +} or {@code *} quantifier.
+     *
+     * @return 1 for a negated class or 0, followed by the bounds of the ranges of the class, or null if the
+     * constraint isn't such a class
+     */
+    static int[] charClass(String constraint) {
+        if (!constraint.startsWith("[") || !(constraint.endsWith("]+") || constraint.endsWith("]*"))) return null;
+        String body = constraint.substring(1, constraint.length() - 2);
+        List<Integer> ranges = new ArrayList<>();
+        int i = 0;
+        boolean negated = body.startsWith("^");
+        if (negated) i++;
+        ranges.add(negated ? 1 : 0);
+        if (i == body.length()) return null;
+        while (i < body.length()) {
+            int low = classChar(body, i);
+            if (low < 0) return null;
+            i += body.charAt(i) == '\\' ? 2 : 1;
+            int high = low;
+            if (i + 1 < body.length() && body.charAt(i) == '-') {
+                high = classChar(body, i + 1);
+                if (high < low) return null;
+                i += body.charAt(i + 1) == '\\' ? 3 : 2;
+            }
+            ranges.add(low);
+            ranges.add(high);
+        }
+        return ranges.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return the character at the given position of a class body, or -1 if it isn't a plain character
+     */
+    private static int classChar(String body, int i) {
+        char c = body.charAt(i);
+        if (c == '[' || c == ']' || (c == '&' && i + 1 < body.length() && body.charAt(i + 1) == '&')) return -1;
+        if (c != '\\') return c;
+        if (i + 1 >= body.length() || "\\-[]^./".indexOf(body.charAt(i + 1)) < 0) return -1;
+        return body.charAt(i + 1);
+    }
+}
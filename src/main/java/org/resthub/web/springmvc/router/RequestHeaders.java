@@ -0,0 +1,99 @@
+package org.resthub.web.springmvc.router;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@link HTTPRequestAdapter#headers} of a servlet request, keyed by lower case name, read from the request when
+ * they are asked for.
+ * <p>
+ * A lookup only copies the requested header. Listing, changing or removing the headers copies them all once, the
+ * map then behaves as a plain {@link HashMap}.
+ * <p>
+ * The servlet request is kept, so the headers not read yet can only be read while the request is processed: a
+ * container recycles its requests. {@link HTTPRequestAdapter#detach()} reads them all for a later use.
+ */
+final class RequestHeaders extends AbstractMap<String, HTTPRequestAdapter.Header> {
+
+    private final HttpServletRequest request;
+    /**
+     * The headers read so far, by lower case name, null for a missing header
+     */
+    private final Map<String, HTTPRequestAdapter.Header> read = new HashMap<>(4);
+    /**
+     * All the headers, null until they are needed
+     */
+    private Map<String, HTTPRequestAdapter.Header> all;
+
+    RequestHeaders(HttpServletRequest request) {
+        this.request = request;
+    }
+
+    @Override
+    public HTTPRequestAdapter.Header get(Object key) {
+        if (all != null) return all.get(key);
+        if (!(key instanceof String name) || !name.equals(name.toLowerCase(Locale.ROOT))) return null;
+        if (read.containsKey(name)) return read.get(name);
+        HTTPRequestAdapter.Header header = header(name, request.getHeaders(name));
+        read.put(name, header);
+        return header;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public HTTPRequestAdapter.Header put(String key, HTTPRequestAdapter.Header value) {
+        return all().put(key, value);
+    }
+
+    @Override
+    public HTTPRequestAdapter.Header remove(Object key) {
+        return all().remove(key);
+    }
+
+    @Override
+    public Set<Entry<String, HTTPRequestAdapter.Header>> entrySet() {
+        return all().entrySet();
+    }
+
+    private Map<String, HTTPRequestAdapter.Header> all() {
+        if (all == null) {
+            Map<String, HTTPRequestAdapter.Header> headers = new HashMap<>();
+            Enumeration<String> names = request.getHeaderNames();
+            while (names != null && names.hasMoreElements()) {
+                String name = names.nextElement();
+                String key = name.toLowerCase(Locale.ROOT);
+                HTTPRequestAdapter.Header header = read.containsKey(key) ? read.get(key) : header(name, request.getHeaders(name));
+                if (header != null) headers.put(key, header);
+            }
+            all = headers;
+        }
+        return all;
+    }
+
+    /**
+     * @return the header, or null if it has no value
+     */
+    private static HTTPRequestAdapter.Header header(String name, Enumeration<String> values) {
+        if (values == null || !values.hasMoreElements()) return null;
+        HTTPRequestAdapter.Header header = new HTTPRequestAdapter.Header();
+        header.name = name;
+        List<String> list = new ArrayList<>(1);
+        while (values.hasMoreElements()) {
+            list.add(values.nextElement());
+        }
+        header.values = list;
+        return header;
+    }
+}
@@ -0,0 +1,40 @@
+package org.resthub.web.springmvc.router;
+
+/**
+ * Path of a request as seen by the routes.
+ * <p>
+ * The servlet container already excludes the context and servlet paths from the path info, so the context path is
+ * only stripped when the path still starts with it, and only as a prefix. The runs of {@code /} are collapsed like
+ * the loaders do for the route paths. The usual path needs none of this and is returned as is, without allocation.
+ */
+final class RequestPath {
+
+    private RequestPath() {
+    }
+
+    /**
+     * @param path        the request path
+     * @param contextPath the context path of the application, may be null or empty
+     * @return the path to match against the routes
+     */
+    static String of(String path, String contextPath) {
+        if (path == null) return null;
+        int start = 0;
+        if (contextPath != null && !contextPath.isEmpty() && path.startsWith(contextPath)
+                && (path.length() == contextPath.length() || path.charAt(contextPath.length()) == '/')) {
+            start = contextPath.length();
+            if (start == path.length()) return "/";
+        }
+        int doubleSlash = path.indexOf("//", start);
+        if (doubleSlash < 0) {
+            return start == 0 ? path : path.substring(start);
+        }
+        StringBuilder normalized = new StringBuilder(path.length() - start);
+        normalized.append(path, start, doubleSlash + 1);
+        for (int i = doubleSlash + 1; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c != '/' || path.charAt(i - 1) != '/') normalized.append(c);
+        }
+        return normalized.toString();
+    }
+}
@@ -0,0 +1,97 @@
+package org.resthub.web.springmvc.router;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read only map of the arguments of a matched route.
+ * <p>
+ * The argument names of a route are laid out once, when the route is computed, so a match only fills an array of
+ * values, the slots of the arguments missing from the request holding {@link #ABSENT}. Routes have a handful of
+ * arguments, the lookups scan the names.
+ */
+final class RouteArgs extends AbstractMap<String, String> {
+
+    /**
+     * Value of a slot without argument, compared by identity
+     */
+    @SuppressWarnings("StringOperationCanBeSimplified")
+    static final String ABSENT = new String();
+
+    private final String[] names;
+    private final String[] values;
+
+    /**
+     * @param names  the argument names of the route, shared by all its matches
+     * @param values the values, indexed like the names, not copied
+     */
+    RouteArgs(String[] names, String[] values) {
+        this.names = names;
+        this.values = values;
+    }
+
+    private int indexOf(Object name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) return values[i] != ABSENT ? i : -1;
+        }
+        return -1;
+    }
+
+    @Override
+    public String get(Object key) {
+        int i = indexOf(key);
+        return i < 0 ? null : values[i];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (String value : values) {
+            if (value != ABSENT) size++;
+        }
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<>() {
+                    private int next = skipAbsent(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < names.length;
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        Entry<String, String> entry = new SimpleImmutableEntry<>(names[next], values[next]);
+                        next = skipAbsent(next + 1);
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return RouteArgs.this.size();
+            }
+        };
+    }
+
+    private int skipAbsent(int from) {
+        while (from < values.length && values[from] == ABSENT) from++;
+        return from;
+    }
+}
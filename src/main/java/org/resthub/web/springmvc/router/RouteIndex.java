@@ -0,0 +1,306 @@
+package org.resthub.web.springmvc.router;
+
+import jregex.Pattern;
+import org.resthub.web.springmvc.router.Router.Route;
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per HTTP method index of the routes.
+ * <p>
+ * Each method gets its own bucket holding the routes declared for that method and the {@code *} routes, merged at
+ * their original positions. The {@code HEAD} bucket also holds the {@code GET} routes, as {@link Route#matches}
+ * accepts a HEAD request on a GET route: a single lookup finds the first explicit HEAD or implicit GET route, any
+ * route matching the GET request also matching the HEAD one. A request only visits the bucket of its method, methods
+ * without a bucket only see the {@code *} routes.
+ * <p>
+ * When a bucket holds host qualified routes, it is partitioned by host: the host agnostic routes, a map of the
+ * routes bound to an exact host and the routes bound to a host pattern, grouped by pattern. A request then only
+ * searches the partitions of its host, checking each host pattern once.
+ * <p>
+ * The routes of a partition are searched with the configured {@link MatchingEngine}. The routes of an exact host or
+ * host pattern partition are matched without checking their host again.
+ */
+final class RouteIndex implements RouteMatcher {
+
+    private static final String ANY_METHOD = "*";
+
+    private final Map<String, Bucket> buckets = new HashMap<>();
+    private final Bucket anyMethod;
+    private final Bucket all;
+
+    RouteIndex(List<Route> routes, MatchingEngine engine) {
+        Set<String> methods = new LinkedHashSet<>();
+        for (Route route : routes) {
+            String method = normalize(route.method);
+            if (!ANY_METHOD.equals(method)) methods.add(method);
+            if ("GET".equals(method)) methods.add("HEAD");
+        }
+        for (String method : methods) {
+            buckets.put(method, bucket(filter(routes, method), engine));
+        }
+        this.anyMethod = bucket(filter(routes, ANY_METHOD), engine);
+        this.all = bucket(routes, engine);
+    }
+
+    /**
+     * Finds the first route matching the request.
+     *
+     * @return the match, or null if no route matches
+     */
+    @Override
+    public RouteMatch match(String method, String path, MediaType accept, MediaType contentType, String host) {
+        return forMethod(method).match(method, path, accept, contentType, host);
+    }
+
+    /**
+     * @param method the request method, null to get all the routes
+     * @return the routes that can match a request with the given method
+     */
+    private Bucket forMethod(String method) {
+        if (method == null) return all;
+        Bucket bucket = buckets.get(normalize(method));
+        return bucket != null ? bucket : anyMethod;
+    }
+
+    private static Bucket bucket(List<Route> routes, MatchingEngine engine) {
+        for (Route route : routes) {
+            if (!route.host.isEmpty()) return new HostPartitionedBucket(routes, engine);
+        }
+        return engineBucket(routes, engine, false);
+    }
+
+    /**
+     * @param hostChecked true if the bucket is only searched once the request host is known to match the host of
+     *                    its routes
+     */
+    private static Bucket engineBucket(List<Route> routes, MatchingEngine engine, boolean hostChecked) {
+        return switch (engine) {
+            case TRIE -> new TrieBucket(routes, false, hostChecked);
+            case SAFE -> new TrieBucket(routes, true, hostChecked);
+            case LINEAR -> new LinearBucket(routes, hostChecked);
+            case ALTERNATION -> new AlternationMatcher(routes, hostChecked)::match;
+            case COMPILED -> new CompiledMatcher(routes, hostChecked)::match;
+            case PATH_PATTERN -> new PathPatternMatcher(routes, hostChecked)::match;
+        };
+    }
+
+    private static List<Route> filter(List<Route> routes, String method) {
+        List<Route> bucket = new ArrayList<>();
+        for (Route route : routes) {
+            String routeMethod = normalize(route.method);
+            if (ANY_METHOD.equals(routeMethod) || routeMethod.equals(method)
+                    || ("HEAD".equals(method) && "GET".equals(routeMethod))) {
+                bucket.add(route);
+            }
+        }
+        return bucket;
+    }
+
+    private static String normalize(String method) {
+        return method.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * The routes of a method bucket.
+     */
+    private interface Bucket {
+
+        RouteMatch match(String method, String path, MediaType accept, MediaType contentType, String host);
+    }
+
+    /**
+     * Bucket split by host, as the partitions are disjoint the first match of the bucket is the first match, in
+     * declaration order, among the first matches of the partitions of the request host. A partition is only searched
+     * when its first route comes before the match found so far.
+     * <p>
+     * The requests without host match the routes whatever their host, they search all the routes of the bucket at
+     * once, built on the first such request.
+     */
+    private static final class HostPartitionedBucket implements Bucket {
+
+        private final List<Route> routes;
+        private final MatchingEngine engine;
+        private volatile Bucket all;
+        private final Partition agnostic;
+        private final Map<String, Partition> exactHosts = new HashMap<>();
+        private final Pattern[] hostPatterns;
+        private final Partition[] hostPatternPartitions;
+        private final Map<Route, Integer> positions = new IdentityHashMap<>();
+
+        HostPartitionedBucket(List<Route> routes, MatchingEngine engine) {
+            this.routes = routes;
+            this.engine = engine;
+            List<Route> agnosticRoutes = new ArrayList<>();
+            Map<String, List<Route>> byExactHost = new LinkedHashMap<>();
+            Map<String, List<Route>> byHostPattern = new LinkedHashMap<>();
+            Map<String, Pattern> patterns = new HashMap<>();
+            for (int position = 0; position < routes.size(); position++) {
+                Route route = routes.get(position);
+                positions.put(route, position);
+                if (route.host.isEmpty()) {
+                    agnosticRoutes.add(route);
+                } else if (route.exactHost != null) {
+                    byExactHost.computeIfAbsent(route.exactHost, k -> new ArrayList<>()).add(route);
+                } else {
+                    String source = route.hostPattern.toString();
+                    patterns.putIfAbsent(source, route.hostPattern);
+                    byHostPattern.computeIfAbsent(source, k -> new ArrayList<>()).add(route);
+                }
+            }
+            this.agnostic = partition(agnosticRoutes, false);
+            byExactHost.forEach((host, list) -> exactHosts.put(host, partition(list, true)));
+            this.hostPatterns = new Pattern[byHostPattern.size()];
+            this.hostPatternPartitions = new Partition[byHostPattern.size()];
+            int i = 0;
+            for (Map.Entry<String, List<Route>> entry : byHostPattern.entrySet()) {
+                hostPatterns[i] = patterns.get(entry.getKey());
+                hostPatternPartitions[i++] = partition(entry.getValue(), true);
+            }
+        }
+
+        private Partition partition(List<Route> routes, boolean hostChecked) {
+            int firstPosition = routes.isEmpty() ? Integer.MAX_VALUE : positions.get(routes.get(0));
+            return new Partition(engineBucket(routes, engine, hostChecked), firstPosition);
+        }
+
+        @Override
+        public RouteMatch match(String method, String path, MediaType accept, MediaType contentType, String host) {
+            if (host == null) return all().match(method, path, accept, contentType, host);
+            RouteMatch first = agnostic.bucket.match(method, path, accept, contentType, host);
+            Partition exact = exactHosts.get(host);
+            if (exact != null && before(exact, first)) {
+                first = first(first, exact.bucket.match(method, path, accept, contentType, host));
+            }
+            for (int i = 0; i < hostPatterns.length; i++) {
+                Partition partition = hostPatternPartitions[i];
+                if (before(partition, first) && hostPatterns[i].matcher(host).matches()) {
+                    first = first(first, partition.bucket.match(method, path, accept, contentType, host));
+                }
+            }
+            return first;
+        }
+
+        private Bucket all() {
+            Bucket bucket = all;
+            if (bucket == null) {
+                synchronized (this) {
+                    bucket = all;
+                    if (bucket == null) {
+                        bucket = engineBucket(routes, engine, false);
+                        all = bucket;
+                    }
+                }
+            }
+            return bucket;
+        }
+
+        /**
+         * @return true if a route of the partition may come before the match
+         */
+        private boolean before(Partition partition, RouteMatch match) {
+            return match == null || partition.firstPosition < positions.get(match.getRoute());
+        }
+
+        private RouteMatch first(RouteMatch a, RouteMatch b) {
+            if (a == null) return b;
+            if (b == null) return a;
+            return positions.get(a.getRoute()) <= positions.get(b.getRoute()) ? a : b;
+        }
+
+        /**
+         * The routes of a host, with the position in the method bucket of the first one.
+         */
+        private record Partition(Bucket bucket, int firstPosition) {
+        }
+    }
+
+    private static final class LinearBucket implements Bucket {
+
+        private final Route[] routes;
+        private final boolean hostChecked;
+
+        LinearBucket(List<Route> routes, boolean hostChecked) {
+            this.routes = routes.toArray(new Route[0]);
+            this.hostChecked = hostChecked;
+        }
+
+        @Override
+        public RouteMatch match(String method, String path, MediaType accept, MediaType contentType, String host) {
+            for (Route route : routes) {
+                Map<String, String> args = route.matches(method, path, accept, contentType, host, hostChecked);
+                if (args != null) return new RouteMatch(route, args);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The routes without argument nor regex are hashed by their path, so they are found without running any
+     * regex. A static route is only answered from the hash when no earlier route of the bucket may match its path,
+     * as told by {@link RouteOverlaps}, otherwise the trie keeps the declaration order. In linear time mode the regex
+     * routes are matched by their {@link SafePattern} when they have one.
+     */
+    private static final class TrieBucket implements Bucket {
+
+        private final RouteTrie trie;
+        /**
+         * Static routes by path, only holds the routes that can't be shadowed by an earlier route of the bucket
+         */
+        private final Map<String, Route[]> statics = new HashMap<>();
+        private final boolean linearTime;
+        private final boolean hostChecked;
+
+        TrieBucket(List<Route> routes, boolean linearTime, boolean hostChecked) {
+            this.trie = new RouteTrie(routes);
+            this.linearTime = linearTime;
+            this.hostChecked = hostChecked;
+            Map<String, List<Route>> byPath = new HashMap<>();
+            for (int position = 0; position < trie.size(); position++) {
+                Route route = trie.route(position);
+                if (route.literalPath == null) continue;
+                int[] candidates = trie.candidates(route.literalPath);
+                boolean shadowed = false;
+                for (int i = 0; i < candidates.length && candidates[i] < position; i++) {
+                    Route earlier = trie.route(candidates[i]);
+                    if (earlier.literalPath == null && RouteOverlaps.pathsMayOverlap(earlier, route)) {
+                        shadowed = true;
+                        break;
+                    }
+                }
+                if (!shadowed) {
+                    byPath.computeIfAbsent(route.literalPath, k -> new ArrayList<>()).add(route);
+                }
+            }
+            byPath.forEach((path, list) -> statics.put(path, list.toArray(new Route[0])));
+        }
+
+        @Override
+        public RouteMatch match(String method, String path, MediaType accept, MediaType contentType, String host) {
+            Route[] exact = statics.get(path);
+            if (exact != null) {
+                for (Route route : exact) {
+                    Map<String, String> args = route.matches(method, path, accept, contentType, host, hostChecked);
+                    if (args != null) return new RouteMatch(route, args);
+                }
+            }
+            for (int position : trie.candidates(path)) {
+                Route route = trie.route(position);
+                Map<String, String> args = linearTime
+                        ? route.matchesSafely(method, path, accept, contentType, host, hostChecked)
+                        : route.matches(method, path, accept, contentType, host, hostChecked);
+                if (args != null) return new RouteMatch(route, args);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.resthub.web.springmvc.router;
+
+import org.resthub.web.springmvc.router.Router.Route;
+
+import java.util.Map;
+
+/**
+ * The route matching a request, with the arguments extracted from the request.
+ *
+ * @see Router#route(HTTPRequestAdapter)
+ */
+public class RouteMatch {
+
+    private final Route route;
+    private final Map<String, String> args;
+
+    public RouteMatch(Route route, Map<String, String> args) {
+        this.route = route;
+        this.args = args;
+    }
+
+    public Route getRoute() {
+        return route;
+    }
+
+    public Map<String, String> getArgs() {
+        return args;
+    }
+}
@@ -0,0 +1,177 @@
+package org.resthub.web.springmvc.router;
+
+import org.springframework.http.MediaType;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of the routing results, keyed on everything {@link Router.Route#matches} reads: method, path,
+ * host, accept and content type.
+ * <p>
+ * The cache is split in stripes, each one a synchronized access ordered map, to keep the lock contention low. An
+ * entry remembers the route matcher it was computed from and is ignored once the route table changed, so a lookup
+ * racing with a {@link Router} update can't publish a stale result.
+ * <p>
+ * The arguments of a cached match are shared between requests, so they are exposed as an unmodifiable map.
+ * <p>
+ * The same structure caches the requests matching no route, as a miss also depends on the host and media types.
+ *
+ * @see Router#setMatchCacheSize(int)
+ */
+public class RouteMatchCache {
+
+    private static final int MAX_STRIPES = 16;
+    private static final int MIN_ENTRIES_PER_STRIPE = 32;
+    /**
+     * Cached result of a request matching no route
+     */
+    private static final RouteMatch MISS = new RouteMatch(null, Map.of());
+
+    private final int maxSize;
+    private final Stripe[] stripes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    RouteMatchCache(int maxSize) {
+        this.maxSize = maxSize;
+        int stripeCount = Math.max(1, Math.min(MAX_STRIPES, maxSize / MIN_ENTRIES_PER_STRIPE));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe((maxSize + stripeCount - 1) / stripeCount);
+        }
+    }
+
+    /**
+     * @return the cached match, or null if the request isn't cached for the given route matcher
+     */
+    RouteMatch get(Key key, RouteMatcher matcher) {
+        Entry entry = stripe(key).get(key);
+        if (entry == null || entry.matcher != matcher) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.match;
+    }
+
+    /**
+     * Caches a match, the arguments are wrapped in an unmodifiable map unless they already are read only.
+     *
+     * @return the cached match
+     */
+    RouteMatch put(Key key, RouteMatcher matcher, RouteMatch match) {
+        RouteMatch cached = match.getArgs() instanceof RouteArgs ? match
+                : new RouteMatch(match.getRoute(), Collections.unmodifiableMap(match.getArgs()));
+        stripe(key).put(key, new Entry(matcher, cached));
+        return cached;
+    }
+
+    /**
+     * Remembers a request matching no route, {@link #get} then returns a match without route for it.
+     */
+    void putMiss(Key key, RouteMatcher matcher) {
+        stripe(key).put(key, new Entry(matcher, MISS));
+    }
+
+    /**
+     * Drops every entry, called when the route table changes.
+     */
+    void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * The lookups the cache was missing, whether their result is then stored or not: a cache holds one kind of result,
+     * the lookups of the requests whose result belongs to the other cache are counted as misses too.
+     *
+     * @return the number of lookups that found no result for the current routes
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RouteMatchCache[size=%d/%d, hits=%d, misses=%d, evictions=%d]",
+                size(), maxSize, getHits(), getMisses(), getEvictions());
+    }
+
+    private Stripe stripe(Key key) {
+        int hash = key.hashCode();
+        return stripes[((hash ^ (hash >>> 16)) & 0x7fffffff) % stripes.length];
+    }
+
+    /**
+     * The request parts read by {@link Router.Route#matches}, the method is case insensitive.
+     */
+    record Key(String method, String path, String host, MediaType accept, MediaType contentType) {
+
+        static Key of(String method, String path, String host, MediaType accept, MediaType contentType) {
+            return new Key(method == null ? null : method.toUpperCase(Locale.ROOT), path, host, accept, contentType);
+        }
+    }
+
+    private record Entry(RouteMatcher matcher, RouteMatch match) {
+    }
+
+    private final class Stripe {
+
+        private final Map<Key, Entry> entries;
+
+        Stripe(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized Entry get(Key key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(Key key, Entry entry) {
+            entries.put(key, entry);
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.resthub.web.springmvc.router;
+
+import org.resthub.web.springmvc.router.Router.Route;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+/**
+ * Finds the route matching a request among a fixed list of routes.
+ * <p>
+ * A matcher is built by its {@link Factory} each time the routes of the {@link Router} change, and is then used by
+ * all the requests, concurrently: it must be thread safe and must not change once built. It has to give the result
+ * of {@link Route#matches(String, String, MediaType, MediaType, String)} tried on each route in declaration order,
+ * the engines only differ by how fast they get there.
+ *
+ * @see MatchingEngine
+ * @see Router#setMatcherFactory(Factory)
+ */
+public interface RouteMatcher {
+
+    /**
+     * Finds the first route, in declaration order, matching the request.
+     *
+     * @param method      the request method, null to match any method
+     * @param path        the request path
+     * @param accept      the media type expected in return, may be null
+     * @param contentType the media type of the request body, may be null
+     * @param host        the request domain, may be null
+     * @return the match, or null if no route matches
+     */
+    RouteMatch match(String method, String path, MediaType accept, MediaType contentType, String host);
+
+    /**
+     * Builds the matchers of a router.
+     */
+    @FunctionalInterface
+    interface Factory {
+
+        /**
+         * @param routes the routes in declaration order, an immutable list
+         * @return the matcher of the routes
+         */
+        RouteMatcher create(List<Route> routes);
+    }
+}
@@ -0,0 +1,230 @@
+package org.resthub.web.springmvc.router;
+
+import jregex.Pattern;
+import org.resthub.web.springmvc.router.Router.Route;
+import org.resthub.web.springmvc.router.Router.Route.Segment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Static analysis of a list of routes: which routes may match the same request, and which routes can never be
+ * reached because an earlier route matches all their requests.
+ * <p>
+ * The routes are compared on everything {@link Route#matches} reads: the method, the path segments (literals and
+ * argument constraints), the host and the media types. Only the method and the path can tell two routes apart, as a
+ * request without host or media type matches the routes whatever their host and media types.
+ * <p>
+ * The answers are conservative: two routes said not to overlap never match the same request, so their relative
+ * order doesn't matter and they can be looked up by an order independent structure, and a route is only reported
+ * unreachable when an earlier route is sure to match each of its requests. A route shadowed by the union of several
+ * earlier routes isn't detected.
+ *
+ * @see Router#getOverlaps()
+ */
+public final class RouteOverlaps {
+
+    private final List<Route> routes;
+    private final Map<Route, Integer> positions = new IdentityHashMap<>();
+    /**
+     * For each route, the positions of the earlier routes that may match the same requests
+     */
+    private final int[][] earlierOverlaps;
+    /**
+     * For each unreachable route, the earlier route matching all its requests
+     */
+    private final Map<Route, Route> shadowedBy = new IdentityHashMap<>();
+    private final List<Route> unreachable = new ArrayList<>();
+    private final boolean[] independent;
+
+    /**
+     * @param routes the routes in declaration order
+     */
+    public RouteOverlaps(List<Route> routes) {
+        this.routes = List.copyOf(routes);
+        this.earlierOverlaps = new int[this.routes.size()][];
+        this.independent = new boolean[this.routes.size()];
+        Arrays.fill(independent, true);
+        Map<String, Pattern> constraints = new HashMap<>();
+        for (int i = 0; i < this.routes.size(); i++) {
+            Route route = this.routes.get(i);
+            positions.putIfAbsent(route, i);
+            List<Integer> overlaps = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                Route earlier = this.routes.get(j);
+                if (!mayOverlap(earlier, route, constraints)) continue;
+                overlaps.add(j);
+                independent[i] = false;
+                independent[j] = false;
+                if (!shadowedBy.containsKey(route) && covers(earlier, route, constraints)) {
+                    shadowedBy.put(route, earlier);
+                    unreachable.add(route);
+                }
+            }
+            earlierOverlaps[i] = overlaps.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * @return the routes an earlier route always matches first, in declaration order
+     */
+    public List<Route> getUnreachableRoutes() {
+        return Collections.unmodifiableList(unreachable);
+    }
+
+    /**
+     * @return the earlier route matching all the requests of an unreachable route, null if the route is reachable
+     */
+    public Route getShadowingRoute(Route route) {
+        return shadowedBy.get(route);
+    }
+
+    /**
+     * @return the earlier routes that may match some of the requests of the route, in declaration order
+     */
+    public List<Route> getEarlierOverlaps(Route route) {
+        Integer position = positions.get(route);
+        if (position == null) return List.of();
+        List<Route> overlaps = new ArrayList<>(earlierOverlaps[position].length);
+        for (int earlier : earlierOverlaps[position]) {
+            overlaps.add(routes.get(earlier));
+        }
+        return overlaps;
+    }
+
+    /**
+     * @return true if no other route may match a request of the route: it can be looked up regardless of the route
+     * order
+     */
+    public boolean isIndependent(Route route) {
+        Integer position = positions.get(route);
+        return position != null && independent[position];
+    }
+
+    /**
+     * Finds the routes a change makes unreachable, without analysing the whole list again: the added routes are
+     * compared with the routes before them, and the other routes only with the added routes before them.
+     *
+     * @param previous the routes before the change
+     * @param routes   the routes after the change, in declaration order
+     * @return the routes unreachable after the change but not before, with the earlier route matching all their
+     * requests, in declaration order
+     */
+    static Map<Route, Route> newlyUnreachable(List<Route> previous, List<Route> routes) {
+        Set<Route> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+        kept.addAll(previous);
+        Map<String, Pattern> constraints = new HashMap<>();
+        Map<Route, Route> unreachable = new LinkedHashMap<>();
+        List<Route> added = new ArrayList<>();
+        for (int i = 0; i < routes.size(); i++) {
+            Route route = routes.get(i);
+            if (kept.contains(route)) {
+                if (added.stream().noneMatch(earlier -> covers(earlier, route, constraints))) continue;
+            }
+            for (int j = 0; j < i; j++) {
+                Route earlier = routes.get(j);
+                if (mayOverlap(earlier, route, constraints) && covers(earlier, route, constraints)) {
+                    // a route shadowed by a kept route was already unreachable
+                    if (!kept.contains(route) || !kept.contains(earlier)) unreachable.put(route, earlier);
+                    break;
+                }
+            }
+            if (!kept.contains(route)) added.add(route);
+        }
+        return unreachable;
+    }
+
+    /**
+     * @return false if no request can match both routes, the requests without method (see
+     * {@link Router#route(String, String)}) aside
+     */
+    public static boolean mayOverlap(Route a, Route b) {
+        return mayOverlap(a, b, new HashMap<>());
+    }
+
+    private static boolean mayOverlap(Route a, Route b, Map<String, Pattern> constraints) {
+        return methodsOverlap(a.method, b.method) && pathsMayOverlap(a, b, constraints);
+    }
+
+    /**
+     * Same as {@link #mayOverlap(Route, Route)} without the method, for routes sharing a method bucket.
+     */
+    static boolean pathsMayOverlap(Route a, Route b) {
+        return pathsMayOverlap(a, b, new HashMap<>());
+    }
+
+    private static boolean methodsOverlap(String a, String b) {
+        return "*".equals(a) || "*".equals(b) || a.equalsIgnoreCase(b)
+                || ("GET".equalsIgnoreCase(a) && "HEAD".equalsIgnoreCase(b))
+                || ("HEAD".equalsIgnoreCase(a) && "GET".equalsIgnoreCase(b));
+    }
+
+    private static boolean pathsMayOverlap(Route a, Route b, Map<String, Pattern> constraints) {
+        if (a.literalPath != null && b.literalPath != null) return a.literalPath.equals(b.literalPath);
+        if (a.literalPath != null) return b.pattern.matcher(a.literalPath).matches();
+        if (b.literalPath != null) return a.pattern.matcher(b.literalPath).matches();
+        if (a.segments == null || b.segments == null) return true;
+        // the segments can't match a '/', so a path matching both routes has as many segments as each of them
+        if (a.segments.size() != b.segments.size()) return false;
+        for (int i = 0; i < a.segments.size(); i++) {
+            if (!segmentsMayOverlap(a.segments.get(i), b.segments.get(i), constraints)) return false;
+        }
+        return true;
+    }
+
+    private static boolean segmentsMayOverlap(Segment a, Segment b, Map<String, Pattern> constraints) {
+        if (a.literal != null && b.literal != null) return a.literal.equals(b.literal);
+        if (a.literal != null && b.argName != null) return matches(b.constraint, a.literal, constraints);
+        if (b.literal != null && a.argName != null) return matches(a.constraint, b.literal, constraints);
+        return true;
+    }
+
+    /**
+     * @return true if each request matching {@code b} also matches {@code a}
+     */
+    private static boolean covers(Route a, Route b, Map<String, Pattern> constraints) {
+        boolean method = "*".equals(a.method) || a.method.equalsIgnoreCase(b.method)
+                || ("GET".equalsIgnoreCase(a.method) && "HEAD".equalsIgnoreCase(b.method));
+        boolean host = a.host.isEmpty() || a.host.equals(b.host);
+        boolean mediaTypes = (a.acceptsMask() == MediaTypeMask.ANY || a.accepts.equals(b.accepts))
+                && (a.contentTypeMask() == MediaTypeMask.ANY || a.contentType.equals(b.contentType));
+        return method && host && mediaTypes && pathCovers(a, b, constraints);
+    }
+
+    private static boolean pathCovers(Route a, Route b, Map<String, Pattern> constraints) {
+        if (a.path.equals(b.path)) return true;
+        if (b.literalPath != null) return a.pattern.matcher(b.literalPath).matches();
+        if (a.segments == null || b.segments == null || a.segments.size() != b.segments.size()) return false;
+        for (int i = 0; i < a.segments.size(); i++) {
+            if (!segmentCovers(a.segments.get(i), b.segments.get(i), constraints)) return false;
+        }
+        return true;
+    }
+
+    private static boolean segmentCovers(Segment a, Segment b, Map<String, Pattern> constraints) {
+        if (a.literal != null) return a.literal.equals(b.literal);
+        if (a.argName == null) return a.source.equals(b.source);
+        if (b.literal != null) return matches(a.constraint, b.literal, constraints);
+        if (b.argName == null) return false;
+        if (a.constraint.equals(b.constraint)) return true;
+        if (!Route.DEFAULT_CONSTRAINT.equals(a.constraint)) return false;
+        // a non negated class without '/', quantified by '+', only matches non empty segments
+        int[] ranges = b.constraint.endsWith("+") ? PathRegex.charClass(b.constraint) : null;
+        if (ranges == null || ranges[0] != 0) return false;
+        for (int i = 1; i < ranges.length; i += 2) {
+            if (ranges[i] <= '/' && '/' <= ranges[i + 1]) return false;
+        }
+        return true;
+    }
+
+    private static boolean matches(String constraint, String literal, Map<String, Pattern> constraints) {
+        return constraints.computeIfAbsent(constraint, Pattern::new).matcher(literal).matches();
+    }
+}
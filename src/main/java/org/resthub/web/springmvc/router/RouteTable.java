@@ -0,0 +1,50 @@
+package org.resthub.web.springmvc.router;
+
+import org.resthub.web.springmvc.router.Router.Route;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable snapshot of the routes of a {@link Router}: the routes in declaration order and the matcher built from
+ * them.
+ * <p>
+ * The router never changes a table, it builds a new one for each batch of changes and publishes it at once, so a
+ * request reads a consistent list and matcher without locking.
+ */
+final class RouteTable {
+
+    final List<Route> routes;
+    final RouteMatcher matcher;
+    final RouteMatcher.Factory matcherFactory;
+    /**
+     * The routes {@link SafePattern} can't match in linear time
+     */
+    final List<Route> backtrackingRoutes;
+    /**
+     * Compared routes, computed on first use as the analysis is quadratic in the number of routes
+     */
+    private volatile RouteOverlaps overlaps;
+
+    RouteTable(List<Route> routes, RouteMatcher.Factory matcherFactory) {
+        this.routes = List.copyOf(routes);
+        this.matcher = matcherFactory.create(this.routes);
+        this.matcherFactory = matcherFactory;
+        this.backtrackingRoutes = this.routes.stream().filter(Route::needsBacktracking)
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    RouteOverlaps overlaps() {
+        RouteOverlaps result = overlaps;
+        if (result == null) {
+            synchronized (this) {
+                result = overlaps;
+                if (result == null) {
+                    result = new RouteOverlaps(routes);
+                    overlaps = result;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,155 @@
+package org.resthub.web.springmvc.router;
+
+import org.resthub.web.springmvc.router.Router.Route;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Segment trie compiled from an ordered list of routes.
+ * <p>
+ * Static segments are hashed children of a node, segments with an argument or a regex are wildcard edges kept in
+ * declaration order. A lookup walks the request path once and collects the positions of the routes that may match
+ * it; {@link Route#matches} still has the final word on each candidate. The candidates are returned in declaration
+ * order, so the first-match-wins semantics of the route list are kept.
+ * <p>
+ * Routes that can't be split in segments (see {@link Route.Segment#parse(String)}) are candidates for every
+ * request.
+ *
+ * @see Router#route(HTTPRequestAdapter)
+ */
+final class RouteTrie {
+
+    private final Route[] routes;
+    private final Node root = new Node();
+    /**
+     * Positions of the routes that can't be matched segment by segment
+     */
+    private final int[] unsegmented;
+
+    RouteTrie(List<Route> routes) {
+        this.routes = routes.toArray(new Route[0]);
+        Positions fallback = new Positions();
+        for (int position = 0; position < this.routes.length; position++) {
+            List<Route.Segment> segments = this.routes[position].segments;
+            if (segments == null) {
+                fallback.add(position);
+                continue;
+            }
+            Node node = root;
+            for (Route.Segment segment : segments) {
+                node = segment.literal != null ? node.staticChild(segment.literal) : node.wildcardChild(segment.source);
+            }
+            node.terminals.add(position);
+        }
+        this.unsegmented = fallback.toArray();
+        root.freeze();
+    }
+
+    Route route(int position) {
+        return routes[position];
+    }
+
+    int size() {
+        return routes.length;
+    }
+
+    /**
+     * Finds the routes whose path may match the request path.
+     *
+     * @param path the request path
+     * @return the positions of the candidates, in declaration order. The returned array must not be modified.
+     */
+    int[] candidates(String path) {
+        if (!path.startsWith("/")) return unsegmented;
+        Positions found = new Positions();
+        collect(root, path, 1, found);
+        if (found.size == 0) return unsegmented;
+        return found.sortAndMerge(unsegmented);
+    }
+
+    private static void collect(Node node, String path, int from, Positions found) {
+        if (from > path.length()) {
+            found.addAll(node.routes);
+            return;
+        }
+        int end = path.indexOf('/', from);
+        if (end < 0) end = path.length();
+        if (node.statics != null) {
+            Node child = node.statics.get(path.substring(from, end));
+            if (child != null) collect(child, path, end + 1, found);
+        }
+        for (Node child : node.wildcards) {
+            collect(child, path, end + 1, found);
+        }
+    }
+
+    private static final class Node {
+
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        Map<String, Node> statics;
+        private final Map<String, Node> wildcardsBySource = new HashMap<>();
+        private final List<Node> wildcardList = new ArrayList<>();
+        private final Positions terminals = new Positions();
+        Node[] wildcards = NO_CHILDREN;
+        int[] routes;
+
+        Node staticChild(String literal) {
+            if (statics == null) statics = new HashMap<>();
+            return statics.computeIfAbsent(literal, k -> new Node());
+        }
+
+        Node wildcardChild(String source) {
+            return wildcardsBySource.computeIfAbsent(source, k -> {
+                Node child = new Node();
+                wildcardList.add(child);
+                return child;
+            });
+        }
+
+        void freeze() {
+            routes = terminals.toArray();
+            wildcards = wildcardList.toArray(NO_CHILDREN);
+            if (statics != null) statics.values().forEach(Node::freeze);
+            wildcardList.forEach(Node::freeze);
+        }
+    }
+
+    /**
+     * Growable list of route positions.
+     */
+    private static final class Positions {
+
+        int[] values = new int[8];
+        int size;
+
+        void add(int position) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = position;
+        }
+
+        void addAll(int[] positions) {
+            for (int position : positions) add(position);
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        int[] sortAndMerge(int[] others) {
+            Arrays.sort(values, 0, size);
+            int[] merged = new int[size + others.length];
+            int i = 0, j = 0, k = 0;
+            while (i < size && j < others.length) {
+                merged[k++] = values[i] < others[j] ? values[i++] : others[j++];
+            }
+            while (i < size) merged[k++] = values[i++];
+            while (j < others.length) merged[k++] = others[j++];
+            return merged;
+        }
+    }
+}
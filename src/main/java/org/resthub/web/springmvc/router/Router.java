@@ -20,6 +20,8 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -34,54 +36,134 @@ public class Router implements InitializingBean {
 
     private static final Logger logger = LoggerFactory.getLogger(Router.class);
 
-    public final List<Route> routes;
+    /**
+     * Read only view of the current routes.
+     *
+     * @deprecated the view follows the route changes between two calls, use {@link #getRoutes()} to read a
+     * consistent snapshot
+     */
+    @Deprecated
+    public final List<Route> routes = new RoutesView();
+    /**
+     * The current routes and their index, replaced as a whole on each change.
+     */
+    private volatile RouteTable table = new RouteTable(List.of(), MatchingEngine.TRIE);
+    /**
+     * Serializes the route changes, the requests never take it.
+     */
+    private final Object writeLock = new Object();
+    private RouteMatcher.Factory matcherFactory = MatchingEngine.TRIE;
+    /**
+     * Notified of the new routes each time they change
+     */
+    private final List<Consumer<List<Route>>> routesListeners = new CopyOnWriteArrayList<>();
+    /**
+     * Optional cache of the routing results, null when disabled.
+     */
+    private volatile RouteMatchCache matchCache;
+    /**
+     * Optional cache of the requests matching no route, null when disabled.
+     */
+    private volatile RouteMatchCache missCache;
+    /**
+     * Limits checked before matching a path, 0 when unlimited.
+     */
+    private volatile int maxPathLength;
+    private volatile int maxSegments;
     /**
      * Timestamp the routes file was last loaded at.
      */
     public long lastLoading = -1;
 
     public Router(OpenApiResourceLoader holder) throws IOException {
-        this.routes = new ArrayList<>(500);
         load(holder.getRoutes());
     }
 
+    /**
+     * @return an immutable snapshot of the routes, in declaration order
+     */
+    public List<Route> getRoutes() {
+        return table.routes;
+    }
 
     public void clear() {
-        routes.clear();
+        updateRoutes(List::clear);
     }
 
     /**
      * Parse the routes file. This is called at startup.
      */
     public void load(List<Resource> fileResources) throws IOException {
-        routes.clear();
+        List<Route> loaded = new ArrayList<>(500);
         for (Resource res : fileResources) {
-            routes.addAll(parse(res));
+            loaded.addAll(parse(res));
         }
+        updateRoutes(current -> {
+            current.clear();
+            current.addAll(loaded);
+        });
 
         lastLoading = System.currentTimeMillis();
     }
 
     @Override
     public void afterPropertiesSet() throws Exception {
-        logger.info("Loaded routes: \n\t{}", routes.stream().map(Route::toFixedLengthString).collect(Collectors.joining("\n\t")));
+        logger.info("Loaded routes: \n\t{}", getRoutes().stream().map(Route::toFixedLengthString).collect(Collectors.joining("\n\t")));
+    }
+
+    /**
+     * Applies a batch of changes to the routes. The update works on a copy of the current routes, the result is
+     * compiled once and replaces the route table at once: requests routed meanwhile see either all the changes or
+     * none of them.
+     *
+     * @param update changes the given mutable copy of the routes
+     */
+    public void updateRoutes(Consumer<List<Route>> update) {
+        List<Route> previous;
+        RouteTable published;
+        synchronized (writeLock) {
+            previous = table.routes;
+            List<Route> routes = new ArrayList<>(previous);
+            update.accept(routes);
+            published = new RouteTable(routes, matcherFactory);
+            publish(published);
+        }
+        // both lists are immutable, the routes are compared without holding the lock
+        reportUnreachable(previous, published.routes);
+    }
+
+    /**
+     * Registers a listener called with the current routes, then with the new routes each time they change. The
+     * listener runs under the write lock, once the new routes are published.
+     */
+    void addRoutesListener(Consumer<List<Route>> listener) {
+        synchronized (writeLock) {
+            routesListeners.add(listener);
+            listener.accept(table.routes);
+        }
+    }
+
+    /**
+     * Unregisters a listener, once it returns the listener isn't called anymore.
+     */
+    void removeRoutesListener(Consumer<List<Route>> listener) {
+        synchronized (writeLock) {
+            routesListeners.remove(listener);
+        }
     }
 
     /**
      * Add a route at the given position
      */
     public void addRoute(int position, Route route) {
-        if (position > routes.size()) {
-            position = routes.size();
-        }
-        routes.add(position, route);
+        updateRoutes(routes -> routes.add(Math.min(position, routes.size()), route));
     }
 
     /**
      * Add a route
      */
     public void addRoute(Route route) {
-        routes.add(route);
+        updateRoutes(routes -> routes.add(route));
         logger.info("Loaded route after startup: \n\t{}", route.toFixedLengthString());
     }
 
@@ -90,7 +172,7 @@ public class Router implements InitializingBean {
      */
     public void addRoutes(Route... route) {
         var newRoutes = List.of(route);
-        routes.addAll(newRoutes);
+        updateRoutes(routes -> routes.addAll(newRoutes));
         logger.info("Loaded routes after startup: \n\t{}",
                 newRoutes.stream()
                         .map(Route::toFixedLengthString)
@@ -103,7 +185,7 @@ public class Router implements InitializingBean {
      * list.
      */
     public void appendRoute(Route route) {
-        routes.add(route);
+        updateRoutes(routes -> routes.add(route));
     }
 
 
@@ -111,7 +193,202 @@ public class Router implements InitializingBean {
      * Add a new route at the beginning of the route list
      */
     public void prependRoute(Route route) {
-        routes.add(0, route);
+        updateRoutes(routes -> routes.add(0, route));
+    }
+
+    /**
+     * Publishes a new route table, must be called with the write lock held.
+     */
+    private void publish(RouteTable table) {
+        if (table.matcherFactory == MatchingEngine.SAFE) {
+            // reports the routes once, when they are added or when the engine is selected
+            for (Route route : table.backtrackingRoutes) {
+                if (this.table.matcherFactory != MatchingEngine.SAFE || !this.table.backtrackingRoutes.contains(route)) {
+                    logger.warn("Route {} uses a regex construct that can't be matched in linear time, it is matched by its regex",
+                            route.toFixedLengthString());
+                }
+            }
+        }
+        List<Route> previous = this.table.routes;
+        this.table = table;
+        RouteMatchCache cache = this.matchCache;
+        if (cache != null) {
+            cache.clear();
+        }
+        RouteMatchCache misses = this.missCache;
+        if (misses != null) {
+            misses.clear();
+        }
+        if (table.routes != previous) {
+            for (Consumer<List<Route>> listener : routesListeners) {
+                listener.accept(table.routes);
+            }
+        }
+    }
+
+    /**
+     * Logs the routes a change makes unreachable, the others were reported when they became so.
+     */
+    private static void reportUnreachable(List<Route> previous, List<Route> routes) {
+        if (routes == previous || !logger.isWarnEnabled()) return;
+        RouteOverlaps.newlyUnreachable(previous, routes).forEach((route, shadowing) ->
+                logger.warn("Route {} is unreachable, all its requests are matched by {}",
+                        route.toFixedLengthString(), shadowing.toFixedLengthString()));
+    }
+
+    /**
+     * Selects the algorithm finding the route matching a request, {@link MatchingEngine#TRIE} by default.
+     */
+    public void setEngine(MatchingEngine engine) {
+        setMatcherFactory(engine);
+    }
+
+    /**
+     * @return the selected engine, null when the matchers come from another {@link RouteMatcher.Factory}
+     */
+    public MatchingEngine getEngine() {
+        return matcherFactory instanceof MatchingEngine engine ? engine : null;
+    }
+
+    /**
+     * Selects the factory of the {@link RouteMatcher} finding the route matching a request, one of the
+     * {@link MatchingEngine} or a custom implementation. The routes are matched by a new matcher from now on, unless
+     * the engine already selected is selected again.
+     */
+    public void setMatcherFactory(RouteMatcher.Factory matcherFactory) {
+        synchronized (writeLock) {
+            if (matcherFactory == this.matcherFactory && matcherFactory instanceof MatchingEngine) return;
+            this.matcherFactory = matcherFactory;
+            publish(new RouteTable(table.routes, matcherFactory));
+        }
+    }
+
+    public RouteMatcher.Factory getMatcherFactory() {
+        return matcherFactory;
+    }
+
+    /**
+     * Enables a bounded cache of the routing results, worth it when a few distinct requests make most of the
+     * traffic. The cache is dropped each time the routes change.
+     * <p>
+     * When enabled, the route arguments of a cached request are shared, and exposed as an unmodifiable map.
+     *
+     * @param size the maximum number of cached requests, 0 to disable the cache
+     */
+    public void setMatchCacheSize(int size) {
+        this.matchCache = size > 0 ? new RouteMatchCache(size) : null;
+    }
+
+    /**
+     * @return the routing results cache, with its hit/miss/eviction counters, or null if it isn't enabled
+     */
+    public RouteMatchCache getMatchCache() {
+        return matchCache;
+    }
+
+    /**
+     * Enables a bounded cache of the requests matching no route, so the requests left to the next handler mappings
+     * (static resources, actuator) and the 404 of scanners are answered without searching the routes. It is kept
+     * apart from the {@link #setMatchCacheSize(int) match cache}, so a flow of unknown paths can't evict the
+     * cached matches. The cache is dropped each time the routes change.
+     *
+     * @param size the maximum number of cached requests, 0 to disable the cache
+     */
+    public void setMissCacheSize(int size) {
+        this.missCache = size > 0 ? new RouteMatchCache(size) : null;
+    }
+
+    /**
+     * @return the cache of the unmatched requests, with its hit/miss/eviction counters, or null if it isn't enabled
+     */
+    public RouteMatchCache getMissCache() {
+        return missCache;
+    }
+
+    /**
+     * @return the overlaps between the current routes, and the routes they make unreachable
+     */
+    public RouteOverlaps getOverlaps() {
+        return table.overlaps();
+    }
+
+    /**
+     * @return the routes the {@link MatchingEngine#SAFE} engine can't match in linear time, they are matched by their
+     * regex
+     */
+    public List<Route> getBacktrackingRoutes() {
+        return table.backtrackingRoutes;
+    }
+
+    /**
+     * Limits the length of the paths matched against the routes, the longer paths match no route. Along with
+     * {@link MatchingEngine#SAFE}, it bounds the time spent matching a request.
+     *
+     * @param maxPathLength the maximum number of characters of a path, 0 for no limit
+     */
+    public void setMaxPathLength(int maxPathLength) {
+        this.maxPathLength = maxPathLength;
+    }
+
+    public int getMaxPathLength() {
+        return maxPathLength;
+    }
+
+    /**
+     * Limits the number of segments of the paths matched against the routes, the paths with more segments match no
+     * route.
+     *
+     * @param maxSegments the maximum number of {@code /} of a path, 0 for no limit
+     */
+    public void setMaxSegments(int maxSegments) {
+        this.maxSegments = maxSegments;
+    }
+
+    public int getMaxSegments() {
+        return maxSegments;
+    }
+
+    /**
+     * @return true if the path is over the {@link #setMaxPathLength(int) length} or the
+     * {@link #setMaxSegments(int) segment count} limit
+     */
+    boolean exceedsLimits(String path) {
+        int maxLength = this.maxPathLength;
+        if (maxLength > 0 && path.length() > maxLength) return true;
+        int maxCount = this.maxSegments;
+        if (maxCount <= 0) return false;
+        int count = 0;
+        for (int i = path.indexOf('/'); i >= 0; i = path.indexOf('/', i + 1)) {
+            if (++count > maxCount) return true;
+        }
+        return false;
+    }
+
+    private RouteMatch match(String method, String path, MediaType accept, MediaType contentType, String host) {
+        if (path != null && exceedsLimits(path)) {
+            logger.debug("Path of {} characters over the limits, not matched", path.length());
+            return null;
+        }
+        RouteMatcher matcher = this.table.matcher;
+        RouteMatchCache cache = this.matchCache;
+        RouteMatchCache misses = this.missCache;
+        if (cache == null && misses == null) {
+            return matcher.match(method, path, accept, contentType, host);
+        }
+        RouteMatchCache.Key key = RouteMatchCache.Key.of(method, path, host, accept, contentType);
+        if (misses != null && misses.get(key, matcher) != null) {
+            return null;
+        }
+        RouteMatch match = cache != null ? cache.get(key, matcher) : null;
+        if (match == null) {
+            match = matcher.match(method, path, accept, contentType, host);
+            if (match == null) {
+                if (misses != null) misses.putMiss(key, matcher);
+            } else if (cache != null) {
+                match = cache.put(key, matcher, match);
+            }
+        }
+        return match;
     }
 
     /**
@@ -135,36 +412,48 @@ public class Router implements InitializingBean {
 
 
     public Route route(HTTPRequestAdapter request) {
+        Route route = findRoute(request);
+        if (route == null) {
+            throw new NoRouteFoundException(request.method, request.path);
+        }
+        return route;
+    }
+
+    /**
+     * Same as {@link #route(HTTPRequestAdapter)}, without building an exception when no route matches.
+     *
+     * @return the matching route, or null if no route matches the request
+     */
+    public Route findRoute(HTTPRequestAdapter request) {
         logger.trace("Route: {} - {}", request.path, request.querystring);
 
-        MediaType accept = request.accept;
         String host = request.host;
-        String path = request.contextPath != null ? request.path.replace(request.contextPath, "") : request.path;
-        for (Route route : routes) {
-            Map<String, String> args = route.matches(request.method, path, accept, request.contentType, host);
-
-            if (args != null) {
-                request.routeArgs = args;
+        String path = RequestPath.of(request.path, request.contextPath);
+        // server driven negotiation: the first route for the most preferred acceptable type
+        Negotiation negotiation = Negotiation.of(request.negotiatedTypes(),
+                accept -> match(request.method, path, accept, request.contentType, host));
+        if (negotiation != null) {
+            RouteMatch match = negotiation.match();
+            request.accept = negotiation.accept();
+            Route route = match.getRoute();
+            Map<String, String> args = match.getArgs();
+            request.route = route;
+            request.routeArgs = args;
+            if (route.actionTemplate != null) {
+                request.actionKey = route.actionTemplate.key(args);
+                request.action = route.actionTemplate.expand(request.actionKey, args);
+            } else {
+                request.actionKey = null;
                 request.action = route.action;
-                if (args.containsKey("format")) {
-                    request.setAccept(HTTPRequestAdapter.resolveFormat(args.get("format")));
-                }
-                if (request.action.contains("{")) {
-                    for (String arg : request.routeArgs.keySet()) {
-                        request.action = request.action.replace("{" + arg + "}", request.routeArgs.get(arg));
-                    }
-                }
-                return route;
             }
-        }
-        // Not found - if the request was a HEAD, let's see if we can find a corresponding GET
-        if (request.method.equalsIgnoreCase("head")) {
-            request.method = "GET";
-            Route route = route(request);
-            request.method = "HEAD";
+            if (args.containsKey("format")) {
+                request.setAccept(HTTPRequestAdapter.resolveFormat(args.get("format")));
+            }
+            // The HEAD requests are matched against the HEAD and the GET routes in a single lookup
+            request.headRoutedToGet = "head".equalsIgnoreCase(request.method) && "get".equalsIgnoreCase(route.method);
             return route;
         }
-        throw new NoRouteFoundException(request.method, request.path);
+        return null;
     }
 
     public Map<String, String> route(String method, String path) {
@@ -176,14 +465,13 @@ public class Router implements InitializingBean {
     }
 
     public Map<String, String> route(String method, String path, MediaType accept, MediaType contextType, String host) {
-        for (Route route : routes) {
-            Map<String, String> args = route.matches(method, path, accept, contextType, host);
-            if (args != null) {
-                args.put("action", route.action);
-                return args;
-            }
+        RouteMatch match = match(method, path, accept, contextType, host);
+        if (match != null) {
+            Map<String, String> args = new HashMap<>(match.getArgs());
+            args.put("action", match.getRoute().action);
+            return args;
         }
-        return new HashMap<>(16);
+        return Collections.emptyMap();
     }
 
     public ActionDefinition reverse(String action) {
@@ -205,7 +493,7 @@ public class Router implements InitializingBean {
         HTTPRequestAdapter currentRequest = HTTPRequestAdapter.getCurrent();
 
         Map<String, Object> argsbackup = new HashMap<>(args);
-        for (Route route : routes) {
+        for (Route route : getRoutes()) {
             if (route.actionPattern != null) {
                 Matcher matcher = route.actionPattern.matcher(action);
                 if (matcher.matches()) {
@@ -355,6 +643,26 @@ public class Router implements InitializingBean {
         throw new NoHandlerFoundException(action, args);
     }
 
+    /**
+     * Backs the deprecated {@link #routes} field, each call reads the current route table.
+     */
+    private final class RoutesView extends AbstractList<Route> {
+
+        @Override
+        public Route get(int index) {
+            return getRoutes().get(index);
+        }
+
+        @Override
+        public int size() {
+            return getRoutes().size();
+        }
+
+        @Override
+        public Iterator<Route> iterator() {
+            return getRoutes().iterator();
+        }
+    }
 
     public class ActionDefinition {
 
@@ -454,6 +762,13 @@ public class Router implements InitializingBean {
             return staticArgs;
         }
 
+        /**
+         * @return the compiled action, null when the action has no {@code {arg}} placeholder
+         */
+        public ActionTemplate getActionTemplate() {
+            return actionTemplate;
+        }
+
 
         /**
          * HTTP method, e.g. "GET".
@@ -461,6 +776,7 @@ public class Router implements InitializingBean {
         public String method;
         public String path;
         public String action;
+        ActionTemplate actionTemplate;
         Pattern actionPattern;
         List<String> actionArgs = new ArrayList<String>(3);
         Pattern pattern;
@@ -469,16 +785,65 @@ public class Router implements InitializingBean {
         public Map<String, String> staticArgs = new HashMap<String, String>(3);
         public List<MediaType> accepts = new ArrayList<>(1);
         public List<MediaType> contentType = new ArrayList<>(1);
+        /**
+         * {@link #accepts} and {@link #contentType} compiled by {@link MediaTypeMask}, compiled again when they are
+         * replaced
+         */
+        private Masks masks;
         String host;
+        /**
+         * The host when it is neither empty nor a pattern, such a host is matched by string comparison.
+         */
+        String exactHost;
         Arg hostArg = null;
+        /**
+         * The path split in segments, null if the path can't be matched segment by segment.
+         */
+        List<Segment> segments;
+        /**
+         * The path when it has neither argument nor regex, such a path is matched by string comparison.
+         */
+        String literalPath;
+        /**
+         * When every segment is a literal or an argument with the default constraint, the path is matched segment
+         * by segment without regex: the literal of each segment (null for an argument) and the index in
+         * {@link #args} of each argument (-1 for a literal).
+         */
+        String[] segmentLiterals;
+        int[] segmentArgs;
+        /**
+         * Layout of the arguments of a match, see {@link RouteArgs}: the names, the initial values holding the
+         * static arguments, the slot of each of the {@link #args} (-1 when it isn't read from the path or is
+         * overridden by a static argument) and the slot of the {@link #hostArg}.
+         */
+        String[] argNames;
+        String[] argValues;
+        int[] argSlots;
+        int hostArgSlot;
+        /**
+         * The part of the host removed from the domain to get the value of the {@link #hostArg}
+         */
+        String hostArgLiteral;
+        /**
+         * The arguments of every match, when none of them depends on the request
+         */
+        RouteArgs constantArgs;
+        /**
+         * The path pattern compiled for linear time matching, null when the path is matched without regex or uses
+         * a construct {@link SafePattern} doesn't support
+         */
+        SafePattern safePattern;
         public int routesFileLine;
         public String routesFile;
         static Pattern customRegexPattern = new Pattern("\\{([a-zA-Z_0-9]+)\\}");
         static Pattern argsPattern = new Pattern("\\{<([^>]+)>([a-zA-Z_0-9]+)\\}");
+        static final String DEFAULT_CONSTRAINT = "[^/]+";
+        static final Pattern ANY_HOST = new Pattern(".*");
 
         public void compute() {
             this.host = "";
-            this.hostPattern = new Pattern(".*");
+            this.exactHost = null;
+            this.hostPattern = ANY_HOST;
 
 
             // URL pattern
@@ -518,9 +883,12 @@ public class Router implements InitializingBean {
                         args.add(hostArg);
                     }
                 }
+                if (!host.contains("{") && PathRegex.isLiteral(host.replace(".", ""))) {
+                    this.exactHost = host;
+                }
             }
             String patternString = path;
-            patternString = customRegexPattern.replacer("\\{<[^/]+>$1\\}").replace(patternString);
+            patternString = customRegexPattern.replacer("\\{<" + DEFAULT_CONSTRAINT + ">$1\\}").replace(patternString);
             Matcher matcher = argsPattern.matcher(patternString);
             while (matcher.find()) {
                 Arg arg = new Arg();
@@ -531,6 +899,15 @@ public class Router implements InitializingBean {
 
             patternString = argsPattern.replacer("({$2}$1)").replace(patternString);
             this.pattern = new Pattern(patternString);
+            this.segments = Segment.parse(path);
+            this.literalPath = PathRegex.isLiteral(path) ? path : null;
+            compileSegments();
+            compileArgs();
+            this.safePattern = literalPath == null && segmentLiterals == null ? SafePattern.compile(patternString) : null;
+            this.accepts = Collections.unmodifiableList(new ArrayList<>(accepts));
+            this.contentType = Collections.unmodifiableList(new ArrayList<>(contentType));
+            this.masks = masks();
+            this.actionTemplate = ActionTemplate.compile(action);
             // Action pattern
             patternString = action;
             patternString = patternString.replace(".", "[.]");
@@ -544,10 +921,126 @@ public class Router implements InitializingBean {
         }
 
 
+        private void compileSegments() {
+            this.segmentLiterals = null;
+            this.segmentArgs = null;
+            if (segments == null || literalPath != null) return;
+            String[] literals = new String[segments.size()];
+            int[] argIndexes = new int[segments.size()];
+            Set<String> names = new HashSet<>();
+            for (int i = 0; i < segments.size(); i++) {
+                Segment segment = segments.get(i);
+                literals[i] = segment.literal;
+                argIndexes[i] = -1;
+                if (segment.literal != null) continue;
+                if (!DEFAULT_CONSTRAINT.equals(segment.constraint) || !names.add(segment.argName)) return;
+                for (int a = 0; a < args.size(); a++) {
+                    if (args.get(a).defaultValue == null && args.get(a).name.equals(segment.argName)) argIndexes[i] = a;
+                }
+                if (argIndexes[i] < 0) return;
+            }
+            this.segmentLiterals = literals;
+            this.segmentArgs = argIndexes;
+        }
+
+        private void compileArgs() {
+            List<String> names = new ArrayList<>();
+            this.argSlots = new int[args.size()];
+            for (int i = 0; i < args.size(); i++) {
+                Arg arg = args.get(i);
+                // FIXME: Careful with the arguments that are not matching as they are part of the hostname
+                // Defaultvalue indicates it is a one of these urls. This is a trick and should be changed.
+                argSlots[i] = arg.defaultValue == null && !staticArgs.containsKey(arg.name) ? slot(names, arg.name) : -1;
+            }
+            this.hostArgSlot = hostArg != null && !staticArgs.containsKey(hostArg.name) ? slot(names, hostArg.name) : -1;
+            this.hostArgLiteral = hostArg != null ? hostArg.defaultValue.replaceAll("\\{.*}", "") : null;
+            for (String name : staticArgs.keySet()) {
+                slot(names, name);
+            }
+            this.argNames = names.toArray(new String[0]);
+            this.argValues = new String[argNames.length];
+            for (int i = 0; i < argNames.length; i++) {
+                argValues[i] = staticArgs.containsKey(argNames[i]) ? staticArgs.get(argNames[i]) : RouteArgs.ABSENT;
+            }
+            boolean constant = hostArgSlot < 0;
+            for (int slot : argSlots) {
+                if (slot >= 0) constant = false;
+            }
+            this.constantArgs = constant ? new RouteArgs(argNames, argValues) : null;
+        }
+
+        private static int slot(List<String> names, String name) {
+            int slot = names.indexOf(name);
+            if (slot < 0) {
+                slot = names.size();
+                names.add(name);
+            }
+            return slot;
+        }
+
+        /**
+         * Matches the path segment by segment, see {@link #segmentLiterals}.
+         *
+         * @return the values of the arguments, laid out like {@link #argNames}, or null if the path doesn't match
+         */
+        private String[] matchSegments(String path) {
+            if (!path.startsWith("/")) return null;
+            String[] values = null;
+            int from = 1;
+            for (int i = 0; i < segmentLiterals.length; i++) {
+                if (from > path.length()) return null;
+                int end = path.indexOf('/', from);
+                if (end < 0) end = path.length();
+                String literal = segmentLiterals[i];
+                if (literal != null) {
+                    if (end - from != literal.length() || !path.startsWith(literal, from)) return null;
+                } else {
+                    if (end == from) return null;
+                    int slot = argSlots[segmentArgs[i]];
+                    if (slot >= 0) {
+                        if (values == null) values = argValues.clone();
+                        values[slot] = path.substring(from, end);
+                    }
+                }
+                from = end + 1;
+            }
+            if (from <= path.length()) return null;
+            return values != null ? values : argValues.clone();
+        }
+
         // TODO: Add args names
 
-        private boolean canReturnMediaType(MediaType accept) {
-            if (accept != null && !this.accepts.isEmpty()) {
+        /**
+         * @return the masks of the current media types, the lists being frozen by {@link #compute()} they only change
+         * when replaced
+         */
+        private Masks masks() {
+            Masks current = this.masks;
+            List<MediaType> accepts = this.accepts;
+            List<MediaType> contentType = this.contentType;
+            if (current == null || current.accepts != accepts || current.contentType != contentType) {
+                current = new Masks(accepts, contentType, MediaTypeMask.ofAccepts(accepts),
+                        MediaTypeMask.ofContentTypes(contentType));
+                this.masks = current;
+            }
+            return current;
+        }
+
+        int acceptsMask() {
+            return masks().acceptsMask;
+        }
+
+        int contentTypeMask() {
+            return masks().contentTypeMask;
+        }
+
+        boolean canReturnMediaType(MediaType accept) {
+            if (accept == null) return true;
+            int acceptsMask = acceptsMask();
+            if (acceptsMask == MediaTypeMask.ANY) return true;
+            int id = MediaTypeMask.id(accept);
+            if (id >= 0) return (acceptsMask & (1 << id)) != 0;
+            if (!this.accepts.isEmpty()) {
                 for (MediaType mt : this.accepts)
                     if (mt.includes(accept)) return true;
                 return false;
@@ -556,7 +1049,12 @@ public class Router implements InitializingBean {
         }
 
         private boolean canReceiveMediaType(MediaType mediaType) {
-            if (mediaType != null && !this.contentType.isEmpty()) {
+            if (mediaType == null) return true;
+            int contentTypeMask = contentTypeMask();
+            if (contentTypeMask == MediaTypeMask.ANY) return true;
+            int id = MediaTypeMask.id(mediaType);
+            if (id >= 0) return (contentTypeMask & (1 << id)) != 0;
+            if (!this.contentType.isEmpty()) {
                 for (MediaType mt : this.contentType)
                     if (mediaType.includes(mt)) return true;
                 return false;
@@ -578,43 +1076,124 @@ public class Router implements InitializingBean {
                                            MediaType expectedReturnMediaType,
                                            MediaType requestMediaType,
                                            String domain) {
-            // If method is HEAD and we have a GET
-            if (method == null || this.method.equals("*") || method.equalsIgnoreCase(this.method) || (method.equalsIgnoreCase("head") && ("get").equalsIgnoreCase(this.method))) {
-
-                Matcher matcher = pattern.matcher(path);
+            return matches(method, path, expectedReturnMediaType, requestMediaType, domain, false);
+        }
 
-                boolean hostMatches = (domain == null);
-                if (domain != null) {
-                    Matcher hostMatcher = hostPattern.matcher(domain);
-                    hostMatches = hostMatcher.matches();
-                }
-                // Extract the host variable
-                if (matcher.matches()
-                        && canReturnMediaType(expectedReturnMediaType)
-                        && canReceiveMediaType(requestMediaType)
-                        && hostMatches) {
-
-                    Map<String, String> localArgs = new HashMap<>();
-                    for (Arg arg : args) {
-                        // FIXME: Careful with the arguments that are not matching as they are part of the hostname
-                        // Defaultvalue indicates it is a one of these urls. This is a trick and should be changed.
-                        if (arg.defaultValue == null) {
-                            localArgs.put(arg.name, matcher.group(arg.name));
-                        }
+        /**
+         * Same as {@link #matches(String, String, MediaType, MediaType, String)}.
+         *
+         * @param hostChecked true if the domain is already known to match the host of the route
+         */
+        Map<String, String> matches(String method, String path, MediaType expectedReturnMediaType,
+                                    MediaType requestMediaType, String domain, boolean hostChecked) {
+            if (matchesMethod(method)) {
+
+                if (literalPath != null) {
+                    if (literalPath.equals(path)
+                            && matchesRequest(expectedReturnMediaType, requestMediaType, domain, hostChecked)) {
+                        return extractArgs(null, "", null, domain);
                     }
-                    if (hostArg != null && domain != null) {
-                        // Parse the hostname and get only the part we are interested in
-                        String routeValue = hostArg.defaultValue.replaceAll("\\{.*}", "");
-                        domain = domain.replace(routeValue, "");
-                        localArgs.put(hostArg.name, domain);
+                } else if (segmentLiterals != null) {
+                    String[] values = matchSegments(path);
+                    if (values != null
+                            && matchesRequest(expectedReturnMediaType, requestMediaType, domain, hostChecked)) {
+                        return extractArgs(null, "", values, domain);
+                    }
+                } else {
+                    Matcher matcher = pattern.matcher(path);
+                    if (matcher.matches()
+                            && matchesRequest(expectedReturnMediaType, requestMediaType, domain, hostChecked)) {
+                        return extractArgs(matcher, "", null, domain);
                     }
-                    localArgs.putAll(staticArgs);
-                    return localArgs;
                 }
             }
             return null;
         }
 
+        /**
+         * Same as {@link #matches(String, String, MediaType, MediaType, String, boolean)}, with the
+         * {@link #safePattern} in place of the jregex pattern when there is one.
+         */
+        Map<String, String> matchesSafely(String method, String path, MediaType expectedReturnMediaType,
+                                          MediaType requestMediaType, String domain, boolean hostChecked) {
+            if (safePattern == null) {
+                return matches(method, path, expectedReturnMediaType, requestMediaType, domain, hostChecked);
+            }
+            if (!matchesMethod(method)) return null;
+            int[] groups = safePattern.matches(path);
+            if (groups == null
+                    || !matchesRequest(expectedReturnMediaType, requestMediaType, domain, hostChecked)) return null;
+            String[] values = argValues.clone();
+            for (int i = 0; i < argSlots.length; i++) {
+                if (argSlots[i] < 0) continue;
+                int group = safePattern.group(args.get(i).name);
+                values[argSlots[i]] = group >= 0 && groups[2 * group] >= 0
+                        ? path.substring(groups[2 * group], groups[2 * group + 1]) : null;
+            }
+            return extractArgs(null, "", values, domain);
+        }
+
+        /**
+         * @return true if matching the path may need backtracking: it is matched by its jregex pattern only
+         */
+        boolean needsBacktracking() {
+            return literalPath == null && segmentLiterals == null && safePattern == null;
+        }
+
+        boolean matchesMethod(String method) {
+            // If method is HEAD and we have a GET
+            return method == null || this.method.equals("*") || method.equalsIgnoreCase(this.method) || (method.equalsIgnoreCase("head") && ("get").equalsIgnoreCase(this.method));
+        }
+
+        /**
+         * Checks the parts of the request other than the method and the path.
+         *
+         * @param hostChecked true if the domain is already known to match the host of the route, then it isn't
+         *                    checked again
+         */
+        boolean matchesRequest(MediaType expectedReturnMediaType, MediaType requestMediaType, String domain,
+                               boolean hostChecked) {
+            return canReturnMediaType(expectedReturnMediaType)
+                    && canReceiveMediaType(requestMediaType)
+                    && (hostChecked || matchesHost(domain));
+        }
+
+        boolean matchesHost(String domain) {
+            if (domain == null || host.isEmpty()) return true;
+            if (exactHost != null) return exactHost.equals(domain);
+            return hostPattern.matcher(domain).matches();
+        }
+
+        /**
+         * Builds the arguments of a matching request.
+         *
+         * @param matcher       the matcher of the path, its groups are named after the arguments with the given
+         *                      prefix. Null if the path was matched without regex
+         * @param groupPrefix   prefix of the group names
+         * @param segmentValues the values of the arguments when the path was matched segment by segment, laid out
+         *                      like {@link #argNames}
+         * @param domain        the request domain
+         */
+        Map<String, String> extractArgs(Matcher matcher, String groupPrefix, String[] segmentValues, String domain) {
+            if (constantArgs != null) return constantArgs;
+            String[] values = segmentValues;
+            if (values == null) {
+                values = argValues.clone();
+                if (matcher != null) {
+                    for (int i = 0; i < argSlots.length; i++) {
+                        if (argSlots[i] < 0) continue;
+                        String name = args.get(i).name;
+                        values[argSlots[i]] = matcher.group(groupPrefix.isEmpty() ? name : groupPrefix + name);
+                    }
+                }
+            }
+            if (hostArgSlot >= 0 && domain != null) {
+                // Parse the hostname and get only the part we are interested in
+                values[hostArgSlot] = domain.replace(hostArgLiteral, "");
+            }
+            return new RouteArgs(argNames, values);
+        }
+
         public static class Arg {
 
             String name;
@@ -631,6 +1210,123 @@ public class Router implements InitializingBean {
             }
         }
 
+        /**
+         * A part of the route path between two '/'.
+         */
+        public static class Segment {
+
+            /**
+             * The segment as written in the route
+             */
+            String source;
+            /**
+             * The only value matched by the segment, null if the segment has a regex or an argument
+             */
+            String literal;
+            /**
+             * Name of the argument, when the segment is made of a single argument
+             */
+            String argName;
+            /**
+             * Regex constraint of that argument
+             */
+            String constraint;
+
+            public String getSource() {
+                return source;
+            }
+
+            public String getLiteral() {
+                return literal;
+            }
+
+            public String getArgName() {
+                return argName;
+            }
+
+            public String getConstraint() {
+                return constraint;
+            }
+
+            /**
+             * Splits a route path in segments.
+             *
+             * @param path the path, with the same syntax as {@link Route#path}
+             * @return the segments, or null if some part of the path may match a '/' (so the path can't be matched
+             * segment by segment)
+             */
+            static List<Segment> parse(String path) {
+                if (!path.startsWith("/")) return null;
+                List<Segment> segments = new ArrayList<>();
+                StringBuilder source = new StringBuilder();
+                StringBuilder regex = new StringBuilder();
+                String argName = null;
+                String constraint = null;
+                int argCount = 0;
+                boolean hasText = false;
+                int i = 1;
+                while (i <= path.length()) {
+                    if (i == path.length() || path.charAt(i) == '/') {
+                        Segment segment = new Segment();
+                        segment.source = source.toString();
+                        if (argCount == 0 && PathRegex.isLiteral(segment.source)) {
+                            segment.literal = segment.source;
+                        } else if (argCount == 1 && !hasText) {
+                            segment.argName = argName;
+                            segment.constraint = constraint;
+                        }
+                        if (segment.literal == null && !PathRegex.isSegmentBound(regex.toString())) {
+                            return null;
+                        }
+                        segments.add(segment);
+                        source.setLength(0);
+                        regex.setLength(0);
+                        argCount = 0;
+                        hasText = false;
+                        i++;
+                        continue;
+                    }
+                    int end = path.charAt(i) == '{' ? argEnd(path, i) : -1;
+                    if (end > 0) {
+                        String token = path.substring(i, end);
+                        boolean custom = token.startsWith("{<");
+                        argName = custom ? token.substring(token.indexOf('>') + 1, token.length() - 1) : token.substring(1, token.length() - 1);
+                        constraint = custom ? token.substring(2, token.indexOf('>')) : DEFAULT_CONSTRAINT;
+                        argCount++;
+                        source.append(token);
+                        regex.append('(').append(constraint).append(')');
+                        i = end;
+                    } else {
+                        source.append(path.charAt(i));
+                        regex.append(path.charAt(i));
+                        hasText = true;
+                        i++;
+                    }
+                }
+                return segments;
+            }
+
+            /**
+             * @return the index after the argument starting at the given position, or -1 if there is no argument
+             */
+            private static int argEnd(String path, int start) {
+                int i = start + 1;
+                if (i < path.length() && path.charAt(i) == '<') {
+                    int close = path.indexOf('>', i + 1);
+                    if (close < 0 || close == i + 1) return -1;
+                    i = close + 1;
+                }
+                int nameStart = i;
+                while (i < path.length() && isArgNameChar(path.charAt(i))) i++;
+                if (i == nameStart || i >= path.length() || path.charAt(i) != '}') return -1;
+                return i + 1;
+            }
+
+            private static boolean isArgNameChar(char c) {
+                return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+            }
+        }
+
         @Override
         public String toString() {
             return method + " " + path + " -> " + action;
@@ -639,6 +1335,10 @@ public class Router implements InitializingBean {
         public String toFixedLengthString() {
             return String.format("%-8s%-60s%-60s%22s -> %-22s", method, path, action, MediaType.toString(this.contentType), MediaType.toString(this.accepts));
         }
+
+        private record Masks(List<MediaType> accepts, List<MediaType> contentType, int acceptsMask,
+                             int contentTypeMask) {
+        }
     }
 
 }
@@ -1,7 +1,7 @@
 package org.resthub.web.springmvc.router;
 
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
-import org.resthub.web.springmvc.router.exceptions.NoRouteFoundException;
 import org.resthub.web.springmvc.router.support.RouterHandlerResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,6 +12,8 @@ import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.servlet.handler.AbstractHandlerMapping;
 
+import java.util.Collections;
+
 /**
  * Implementation of the {@link org.springframework.web.servlet.HandlerMapping}
  * interface that maps handlers based on HTTP routes defined in a route
@@ -59,12 +61,21 @@ import org.springframework.web.servlet.handler.AbstractHandlerMapping;
 public class RouterHandlerMapping extends AbstractHandlerMapping {
 
     private static final Logger logger = LoggerFactory.getLogger(RouterHandlerMapping.class);
+    /**
+     * Name of the request attribute holding the last routing of the request
+     */
+    private static final String ROUTING_ATTRIBUTE = RouterHandlerMapping.class.getName() + ".ROUTING";
     private final Router router;
     private final RouterHandlerResolver methodResolver;
+    /**
+     * Optional matcher compared with the router on a sample of the requests, null when disabled.
+     */
+    private volatile ShadowMatcher shadowMatcher;
 
     public RouterHandlerMapping(Router router) {
         this.router = router;
         this.methodResolver = new RouterHandlerResolver();
+        router.addRoutesListener(routes -> methodResolver.clearDynamicHandlers());
     }
 
     /**
@@ -83,9 +94,35 @@ public class RouterHandlerMapping extends AbstractHandlerMapping {
         this.methodResolver.addToCache(key, controller);
     }
 
+    /**
+     * Enables the shadow mode: the sampled requests are also routed by the given matcher and the results compared,
+     * without changing the response.
+     *
+     * @param shadowMatcher the matcher to compare with the router, null to disable the shadow mode. The replaced
+     *                      matcher is closed
+     */
+    public void setShadowMatcher(ShadowMatcher shadowMatcher) {
+        ShadowMatcher previous = this.shadowMatcher;
+        this.shadowMatcher = shadowMatcher;
+        if (previous != null && previous != shadowMatcher) {
+            previous.close();
+        }
+    }
+
+    /**
+     * @return the shadow matcher, with its counters, or null if the shadow mode isn't enabled
+     */
+    public ShadowMatcher getShadowMatcher() {
+        return shadowMatcher;
+    }
+
     /**
      * Resolves a HandlerMethod (of type RouterHandler) given the current HTTP
      * request, using the Router instance.
+     * <p>
+     * The result is kept in a request attribute, so the next lookups of the same request (CORS processing, security
+     * filters introspecting the handler mappings) don't route it again. A forward or an error dispatch, with another
+     * path or dispatcher type, is routed again.
      *
      * @param request the HTTP Servlet request
      * @return a RouterHandler, containing matching route + wrapped request
@@ -94,24 +131,80 @@ public class RouterHandlerMapping extends AbstractHandlerMapping {
     protected Object getHandlerInternal(HttpServletRequest request)
             throws Exception {
 
-        HandlerMethod handler;
-
-        try {
-            // Adapt HTTPServletRequest for Router
-            HTTPRequestAdapter rq = HTTPRequestAdapter.parseRequest(request);
-            // Route request and resolve format
-            Router.Route route = router.route(rq);
-            logger.debug("Looking up handler method for path {} ({} {} {})", route.path, route.method, route.path, route.action);
-            handler = this.methodResolver.resolveHandler(route, rq.action, rq);
-            // Add resolved route arguments to the request
-            request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, rq.routeArgs);
-            request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, route.pattern.toString());
-
-        } catch (NoRouteFoundException nrfe) {
-            handler = null;
-            logger.trace("no route found for method[{}] and path[{}]", nrfe.method, nrfe.path);
+        RoutingKey key = RoutingKey.of(request);
+        if (request.getAttribute(ROUTING_ATTRIBUTE) instanceof Routing routing && routing.key.equals(key)) {
+            return routing.apply(request);
         }
+        Routing routing = route(key, request);
+        request.setAttribute(ROUTING_ATTRIBUTE, routing);
+        return routing.apply(request);
+    }
 
-        return handler;
+    private Routing route(RoutingKey key, HttpServletRequest request) throws Exception {
+        // Adapt HTTPServletRequest for Router
+        HTTPRequestAdapter rq = HTTPRequestAdapter.parseRequest(request);
+        // Route request and resolve format
+        ShadowMatcher shadow = this.shadowMatcher;
+        Router.Route route;
+        if (shadow != null && shadow.sample()) {
+            // routing changes the accepted media type, the candidate gets the original ones
+            var accepted = rq.negotiatedTypes();
+            long start = System.nanoTime();
+            route = router.findRoute(rq);
+            long nanos = System.nanoTime() - start;
+            shadow.compare(rq.method, RequestPath.of(rq.path, rq.contextPath), accepted, rq.contentType, rq.host,
+                    route, route != null ? rq.routeArgs : null, nanos);
+        } else {
+            route = router.findRoute(rq);
+        }
+        if (route == null) {
+            logger.trace("no route found for method[{}] and path[{}]", rq.method, rq.path);
+            return new Routing(key, rq, null, null, null);
+        }
+        if (!(rq.routeArgs instanceof RouteArgs)) {
+            // the arguments of a custom RouteMatcher, the route arguments are already a read only view
+            rq.routeArgs = Collections.unmodifiableMap(rq.routeArgs);
+        }
+        logger.debug("Looking up handler method for path {} ({} {} {})", route.path, route.method, route.path, route.action);
+        HandlerMethod handler = this.methodResolver.resolveHandler(route, rq.action, rq);
+        return new Routing(key, rq, route, route.pattern.toString(), handler);
+    }
+
+    /**
+     * What the routing of a request depends on, the query string included as the adapter keeps it.
+     */
+    private record RoutingKey(DispatcherType dispatcherType, String method, String methodOverride, String pathInfo,
+                              String servletPath, String contextPath, String queryString, String host, String accept,
+                              String contentType) {
+
+        static RoutingKey of(HttpServletRequest request) {
+            return new RoutingKey(request.getDispatcherType(), request.getMethod(),
+                    request.getHeader("X-HTTP-Method-Override"), request.getPathInfo(), request.getServletPath(),
+                    request.getContextPath(), request.getQueryString(), request.getHeader("host"),
+                    request.getHeader("Accept"), request.getHeader("Content-Type"));
+        }
+    }
+
+    /**
+     * The routing of a request, the handler being null when no route matches.
+     */
+    private record Routing(RoutingKey key, HTTPRequestAdapter adapter, Router.Route route, String pattern,
+                           HandlerMethod handler) {
+
+        /**
+         * Exposes the routing in the request attributes.
+         *
+         * @return the handler
+         */
+        HandlerMethod apply(HttpServletRequest request) {
+            // reused by HTTPRequestAdapter.getCurrent(), for the reverse routing during the request
+            request.setAttribute(HTTPRequestAdapter.REQUEST_ATTRIBUTE, adapter);
+            if (route != null) {
+                // Add resolved route arguments to the request, read only as each lookup exposes them again
+                request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, adapter.routeArgs);
+                request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+            }
+            return handler;
+        }
     }
 }
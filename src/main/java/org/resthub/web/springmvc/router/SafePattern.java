@@ -0,0 +1,501 @@
+package org.resthub.web.springmvc.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Linear time matcher for the regex subset found in route paths, used by {@link MatchingEngine#SAFE}.
+ * <p>
+ * The pattern is compiled to a program run by a Pike VM: all the alternatives progress together over the input, one
+ * character at a time, so the matching time is bounded by the path length times the program size, whatever the
+ * pattern and the path. The threads are kept in priority order, so the groups get the same values as with the
+ * backtracking jregex matcher. The thread lists and the stack are allocated once per match, sized by the program.
+ * <p>
+ * Supported: literals, {@code .}, character classes, {@code \d \w \s} and their negations, {@code \}-escaped
+ * punctuation, groups ({@code (...)}, {@code (?:...)}, jregex named groups {@code ({name}...)}), alternations and the
+ * greedy or lazy {@code * + ? {n,m}} quantifiers. Anchors, back references, lookarounds, possessive quantifiers and
+ * flags aren't: {@link #compile(String)} returns null for them.
+ */
+final class SafePattern {
+
+    /**
+     * Maximum number of instructions of a program, bounds the cost of each input character
+     */
+    static final int MAX_PROGRAM_SIZE = 10_000;
+    private static final int MAX_REPEAT = 1_000;
+
+    private static final int CHAR = 0;
+    private static final int SET = 1;
+    private static final int SPLIT = 2;
+    private static final int JUMP = 3;
+    private static final int SAVE = 4;
+    private static final int MATCH = 5;
+
+    private static final CharSet DIGIT = new CharSet(new int[]{'0', '9'}, false);
+    private static final CharSet WORD = new CharSet(new int[]{'0', '9', 'A', 'Z', '_', '_', 'a', 'z'}, false);
+    private static final CharSet SPACE = new CharSet(new int[]{'\t', '\r', ' ', ' '}, false);
+    /**
+     * Like the jregex {@code .} without the DOTALL flag, any character but the line feed
+     */
+    private static final CharSet DOT = new CharSet(new int[]{'\n', '\n'}, true);
+
+    private final int[] ops;
+    private final int[] args;
+    private final int[] args2;
+    private final CharSet[] sets;
+    private final Map<String, Integer> groups;
+    private final int groupCount;
+
+    private SafePattern(Program program, Map<String, Integer> groups, int groupCount) {
+        this.ops = program.ops.stream().mapToInt(Integer::intValue).toArray();
+        this.args = program.args.stream().mapToInt(Integer::intValue).toArray();
+        this.args2 = program.args2.stream().mapToInt(Integer::intValue).toArray();
+        this.sets = program.sets.toArray(new CharSet[0]);
+        this.groups = groups;
+        this.groupCount = groupCount;
+    }
+
+    /**
+     * @param regex a route pattern, with the jregex syntax
+     * @return the compiled pattern, or null if it uses a construct that isn't supported
+     */
+    static SafePattern compile(String regex) {
+        Parser parser = new Parser(regex);
+        Node node = parser.parse();
+        if (node == null) return null;
+        Program program = new Program();
+        if (!node.emit(program)) return null;
+        program.add(MATCH, 0, 0);
+        if (program.ops.size() > MAX_PROGRAM_SIZE) return null;
+        return new SafePattern(program, parser.names, parser.groupCount);
+    }
+
+    /**
+     * @return the index of a named group, or -1 if there is no such group
+     */
+    int group(String name) {
+        Integer group = groups.get(name);
+        return group != null ? group : -1;
+    }
+
+    /**
+     * Matches the whole input.
+     *
+     * @return the start and end of each group, -1 for a group that didn't match, or null if the input doesn't match
+     */
+    int[] matches(String input) {
+        int captureCount = 2 * groupCount;
+        Threads current = new Threads(ops.length, captureCount);
+        Threads next = new Threads(ops.length, captureCount);
+        // each instruction is followed at most once per step and pushes at most two entries
+        int[] stack = new int[2 * ops.length + 1];
+        int[] saved = new int[2 * ops.length + 1];
+        int[] captures = new int[captureCount];
+        Arrays.fill(captures, -1);
+        add(current, stack, saved, 0, captures, 0);
+        for (int position = 0; position <= input.length(); position++) {
+            if (current.size == 0) return null;
+            next.clear();
+            for (int thread = 0; thread < current.size; thread++) {
+                int pc = current.pcs[thread];
+                if (ops[pc] == MATCH) {
+                    if (position == input.length()) {
+                        return Arrays.copyOfRange(current.captures, thread * captureCount, (thread + 1) * captureCount);
+                    }
+                    continue;
+                }
+                if (position == input.length() || (ops[pc] != CHAR && ops[pc] != SET)) continue;
+                char c = input.charAt(position);
+                boolean accepted = ops[pc] == CHAR ? c == args[pc] : sets[args[pc]].contains(c);
+                if (accepted) {
+                    System.arraycopy(current.captures, thread * captureCount, captures, 0, captureCount);
+                    add(next, stack, saved, pc + 1, captures, position + 1);
+                }
+            }
+            Threads swap = current;
+            current = next;
+            next = swap;
+        }
+        return null;
+    }
+
+    /**
+     * Adds the threads reached from an instruction without reading input, in priority order. The captures are
+     * updated while following the {@code SAVE} instructions and restored on the way back, so they are unchanged
+     * once the threads are added.
+     *
+     * @param stack the instructions to follow, a negative entry restores the capture {@code -1 - entry} to the
+     *              value saved at the same index
+     */
+    private void add(Threads threads, int[] stack, int[] saved, int start, int[] captures, int position) {
+        int top = 0;
+        stack[top++] = start;
+        while (top > 0) {
+            int pc = stack[--top];
+            if (pc < 0) {
+                captures[-1 - pc] = saved[top];
+                continue;
+            }
+            if (threads.contains(pc)) continue;
+            int thread = threads.add(pc);
+            switch (ops[pc]) {
+                case JUMP -> stack[top++] = args[pc];
+                case SPLIT -> {
+                    stack[top++] = args2[pc];
+                    stack[top++] = args[pc];
+                }
+                case SAVE -> {
+                    saved[top] = captures[args[pc]];
+                    stack[top++] = -1 - args[pc];
+                    captures[args[pc]] = position;
+                    stack[top++] = pc + 1;
+                }
+                default -> System.arraycopy(captures, 0, threads.captures, thread * captures.length, captures.length);
+            }
+        }
+    }
+
+    /**
+     * The instructions reached at a position, in priority order, as a sparse set indexed by instruction: adding and
+     * clearing take constant time. The captures of the thread at each index are laid out one after the other.
+     */
+    private static final class Threads {
+
+        final int[] pcs;
+        final int[] indexes;
+        final int[] captures;
+        int size;
+
+        Threads(int programSize, int captureCount) {
+            this.pcs = new int[programSize];
+            this.indexes = new int[programSize];
+            this.captures = new int[programSize * captureCount];
+        }
+
+        boolean contains(int pc) {
+            int index = indexes[pc];
+            return index < size && pcs[index] == pc;
+        }
+
+        int add(int pc) {
+            indexes[pc] = size;
+            pcs[size] = pc;
+            return size++;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    /**
+     * Ranges of characters, possibly negated.
+     */
+    private record CharSet(int[] ranges, boolean negated) {
+
+        boolean contains(char c) {
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (c >= ranges[i] && c <= ranges[i + 1]) return !negated;
+            }
+            return negated;
+        }
+
+        CharSet negate() {
+            return new CharSet(ranges, !negated);
+        }
+    }
+
+    private static final class Program {
+
+        final List<Integer> ops = new ArrayList<>();
+        final List<Integer> args = new ArrayList<>();
+        final List<Integer> args2 = new ArrayList<>();
+        final List<CharSet> sets = new ArrayList<>();
+
+        int add(int op, int arg, int arg2) {
+            ops.add(op);
+            args.add(arg);
+            args2.add(arg2);
+            return ops.size() - 1;
+        }
+
+        int size() {
+            return ops.size();
+        }
+
+        boolean full() {
+            return ops.size() > MAX_PROGRAM_SIZE;
+        }
+    }
+
+    private interface Node {
+
+        /**
+         * @return false if the program gets too large
+         */
+        boolean emit(Program program);
+    }
+
+    private record Literal(char c) implements Node {
+        @Override
+        public boolean emit(Program program) {
+            program.add(CHAR, c, 0);
+            return !program.full();
+        }
+    }
+
+    private record Set(CharSet set) implements Node {
+        @Override
+        public boolean emit(Program program) {
+            program.sets.add(set);
+            program.add(SET, program.sets.size() - 1, 0);
+            return !program.full();
+        }
+    }
+
+    private record Sequence(List<Node> nodes) implements Node {
+        @Override
+        public boolean emit(Program program) {
+            for (Node node : nodes) {
+                if (!node.emit(program)) return false;
+            }
+            return true;
+        }
+    }
+
+    private record Alternation(List<Node> alternatives) implements Node {
+        @Override
+        public boolean emit(Program program) {
+            List<Integer> jumps = new ArrayList<>();
+            for (int i = 0; i < alternatives.size(); i++) {
+                int split = -1;
+                if (i < alternatives.size() - 1) split = program.add(SPLIT, program.size() + 1, 0);
+                if (!alternatives.get(i).emit(program)) return false;
+                if (split >= 0) {
+                    jumps.add(program.add(JUMP, 0, 0));
+                    program.args2.set(split, program.size());
+                }
+            }
+            for (int jump : jumps) {
+                program.args.set(jump, program.size());
+            }
+            return !program.full();
+        }
+    }
+
+    private record Group(Node node, int index) implements Node {
+        @Override
+        public boolean emit(Program program) {
+            program.add(SAVE, 2 * index, 0);
+            if (!node.emit(program)) return false;
+            program.add(SAVE, 2 * index + 1, 0);
+            return !program.full();
+        }
+    }
+
+    /**
+     * {@code max} is -1 when unbounded.
+     */
+    private record Repeat(Node node, int min, int max, boolean greedy) implements Node {
+        @Override
+        public boolean emit(Program program) {
+            for (int i = 0; i < min; i++) {
+                if (!node.emit(program)) return false;
+            }
+            if (max < 0) {
+                int split = program.add(SPLIT, 0, 0);
+                if (!node.emit(program)) return false;
+                program.add(JUMP, split, 0);
+                branch(program, split, split + 1, program.size());
+                return !program.full();
+            }
+            List<Integer> splits = new ArrayList<>();
+            for (int i = min; i < max; i++) {
+                int split = program.add(SPLIT, 0, 0);
+                splits.add(split);
+                if (!node.emit(program)) return false;
+            }
+            for (int split : splits) {
+                branch(program, split, split + 1, program.size());
+            }
+            return !program.full();
+        }
+
+        private void branch(Program program, int split, int body, int exit) {
+            program.args.set(split, greedy ? body : exit);
+            program.args2.set(split, greedy ? exit : body);
+        }
+    }
+
+    /**
+     * Recursive descent parser, null results mean an unsupported construct.
+     */
+    private static final class Parser {
+
+        private final String regex;
+        private int i;
+        int groupCount;
+        final Map<String, Integer> names = new HashMap<>();
+
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        Node parse() {
+            Node node = alternation();
+            return node != null && i == regex.length() ? node : null;
+        }
+
+        private Node alternation() {
+            List<Node> alternatives = new ArrayList<>();
+            do {
+                Node sequence = sequence();
+                if (sequence == null) return null;
+                alternatives.add(sequence);
+            } while (i < regex.length() && regex.charAt(i) == '|' && ++i > 0);
+            return alternatives.size() == 1 ? alternatives.get(0) : new Alternation(alternatives);
+        }
+
+        private Node sequence() {
+            List<Node> nodes = new ArrayList<>();
+            while (i < regex.length() && regex.charAt(i) != '|' && regex.charAt(i) != ')') {
+                Node atom = atom();
+                if (atom == null) return null;
+                Node quantified = quantifier(atom);
+                if (quantified == null) return null;
+                nodes.add(quantified);
+            }
+            return new Sequence(nodes);
+        }
+
+        private Node quantifier(Node atom) {
+            if (i >= regex.length()) return atom;
+            int min;
+            int max;
+            char c = regex.charAt(i);
+            if (c == '*') {
+                min = 0;
+                max = -1;
+                i++;
+            } else if (c == '+') {
+                min = 1;
+                max = -1;
+                i++;
+            } else if (c == '?') {
+                min = 0;
+                max = 1;
+                i++;
+            } else if (c == '{') {
+                int close = regex.indexOf('}', i);
+                if (close < 0) return null;
+                String[] bounds = regex.substring(i + 1, close).split(",", -1);
+                try {
+                    min = Integer.parseInt(bounds[0]);
+                    max = bounds.length == 1 ? min : bounds[1].isEmpty() ? -1 : Integer.parseInt(bounds[1]);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                if (bounds.length > 2 || min > MAX_REPEAT || max > MAX_REPEAT || (max >= 0 && max < min)) return null;
+                i = close + 1;
+            } else {
+                return atom;
+            }
+            boolean greedy = true;
+            if (i < regex.length() && regex.charAt(i) == '?') {
+                greedy = false;
+                i++;
+            } else if (i < regex.length() && (regex.charAt(i) == '+' || "*?{".indexOf(regex.charAt(i)) >= 0)) {
+                // possessive or stacked quantifiers
+                return null;
+            }
+            return new Repeat(atom, min, max, greedy);
+        }
+
+        private Node atom() {
+            char c = regex.charAt(i);
+            switch (c) {
+                case '(' -> {
+                    return group();
+                }
+                case '[' -> {
+                    CharSet set = charClass();
+                    return set != null ? new Set(set) : null;
+                }
+                case '.' -> {
+                    i++;
+                    return new Set(DOT);
+                }
+                case '\\' -> {
+                    if (i + 1 >= regex.length()) return null;
+                    char escaped = regex.charAt(i + 1);
+                    i += 2;
+                    CharSet set = escapedSet(escaped);
+                    if (set != null) return new Set(set);
+                    return isPunctuation(escaped) ? new Literal(escaped) : null;
+                }
+                case '^', '$', '*', '+', '?', '{', '}', ']' -> {
+                    return null;
+                }
+                default -> {
+                    i++;
+                    return new Literal(c);
+                }
+            }
+        }
+
+        private Node group() {
+            i++;
+            int index = -1;
+            if (regex.startsWith("?:", i)) {
+                i += 2;
+            } else if (i < regex.length() && regex.charAt(i) == '?') {
+                return null;
+            } else {
+                index = groupCount++;
+                if (i < regex.length() && regex.charAt(i) == '{') {
+                    int close = regex.indexOf('}', i);
+                    if (close < 0) return null;
+                    String name = regex.substring(i + 1, close);
+                    if (name.isEmpty() || names.putIfAbsent(name, index) != null) return null;
+                    i = close + 1;
+                }
+            }
+            Node node = alternation();
+            if (node == null || i >= regex.length() || regex.charAt(i) != ')') return null;
+            i++;
+            return index >= 0 ? new Group(node, index) : node;
+        }
+
+        private CharSet charClass() {
+            int close = i + 1;
+            if (close < regex.length() && regex.charAt(close) == '^') close++;
+            while (close < regex.length() && regex.charAt(close) != ']') {
+                close += regex.charAt(close) == '\\' ? 2 : 1;
+            }
+            if (close >= regex.length()) return null;
+            int[] ranges = PathRegex.charClass(regex.substring(i, close + 1) + "+");
+            if (ranges == null) return null;
+            i = close + 1;
+            return new CharSet(Arrays.copyOfRange(ranges, 1, ranges.length), ranges[0] != 0);
+        }
+
+        private static CharSet escapedSet(char c) {
+            return switch (c) {
+                case 'd' -> DIGIT;
+                case 'D' -> DIGIT.negate();
+                case 'w' -> WORD;
+                case 'W' -> WORD.negate();
+                case 's' -> SPACE;
+                case 'S' -> SPACE.negate();
+                default -> null;
+            };
+        }
+
+        private static boolean isPunctuation(char c) {
+            return c < 128 && !Character.isLetterOrDigit(c) && c > ' ';
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.resthub.web.springmvc.router;
+
+import org.resthub.web.springmvc.router.Router.Route;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Runs a candidate {@link RouteMatcher} next to the router on a sample of the requests and compares the results,
+ * to validate an engine on the production traffic before switching to it.
+ * <p>
+ * The candidate is built from the current routes of the router, and rebuilt when they are published. Its result never
+ * reaches the request: a divergence (another route, or other arguments) is logged and counted, and so is a failure of
+ * the candidate. The time spent by both sides is summed, the primary time being the one of
+ * {@link Router#findRoute(HTTPRequestAdapter)}, match cache included.
+ * <p>
+ * With an executor the candidate runs off the request thread, the comparisons rejected by the executor are counted
+ * as skipped, like the ones whose routes changed before the candidate ran and the ones of the paths over the limits
+ * of the router, that the router doesn't match.
+ * <p>
+ * The shadow matcher follows the routes of the router until it is {@link #close() closed}.
+ *
+ * @see RouterHandlerMapping#setShadowMatcher(ShadowMatcher)
+ */
+public class ShadowMatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShadowMatcher.class);
+
+    private final Router router;
+    private final RouteMatcher.Factory candidateFactory;
+    private final double sampleRate;
+    private final Executor executor;
+    private final Consumer<List<Route>> routesListener = this::rebuild;
+    /**
+     * The candidate built from the routes it holds, replaced when the routes of the router change
+     */
+    private volatile Candidate candidate;
+
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder divergences = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder primaryNanos = new LongAdder();
+    private final LongAdder candidateNanos = new LongAdder();
+
+    /**
+     * @param router           the router serving the requests
+     * @param candidateFactory builds the matcher to compare with the router
+     * @param sampleRate       the part of the requests compared, between 0 and 1
+     * @param executor         runs the comparisons, null to compare on the request thread
+     */
+    public ShadowMatcher(Router router, RouteMatcher.Factory candidateFactory, double sampleRate, Executor executor) {
+        if (sampleRate < 0 || sampleRate > 1)
+            throw new IllegalArgumentException("The sample rate must be between 0 and 1: " + sampleRate);
+        this.router = Objects.requireNonNull(router);
+        this.candidateFactory = Objects.requireNonNull(candidateFactory);
+        this.sampleRate = sampleRate;
+        this.executor = executor;
+        router.addRoutesListener(routesListener);
+    }
+
+    /**
+     * Stops rebuilding the candidate when the routes of the router change, the next comparisons are skipped.
+     */
+    public void close() {
+        router.removeRoutesListener(routesListener);
+    }
+
+    /**
+     * Builds the candidate from the routes just published, a candidate failing to build fails the comparisons until
+     * the next change.
+     */
+    private void rebuild(List<Route> routes) {
+        RouteMatcher matcher = null;
+        try {
+            matcher = candidateFactory.create(routes);
+        } catch (RuntimeException e) {
+            logger.warn("Shadow matcher {} failed to build for {} routes", candidateFactory, routes.size(), e);
+        }
+        this.candidate = new Candidate(routes, matcher);
+    }
+
+    /**
+     * @return true if the current request should be compared
+     */
+    boolean sample() {
+        return sampleRate > 0 && (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Compares the route found by the router for a request with the one of the candidate.
+     *
+     * @param method       the request method
+     * @param path         the path matched by the router
+     * @param accepted     the acceptable media types, by decreasing preference
+     * @param contentType  the request media type
+     * @param host         the request domain
+     * @param route        the route found by the router, null if none
+     * @param args         the arguments extracted by the router
+     * @param primaryNanos the time the router took
+     */
+    void compare(String method, String path, List<MediaType> accepted, MediaType contentType, String host,
+                 Route route, Map<String, String> args, long primaryNanos) {
+        if (path != null && router.exceedsLimits(path)) {
+            // the router doesn't match the path at all, the candidate has no such limits
+            skipped.increment();
+            return;
+        }
+        this.primaryNanos.add(primaryNanos);
+        if (executor == null) {
+            runCandidate(method, path, accepted, contentType, host, route, args);
+            return;
+        }
+        try {
+            executor.execute(() -> runCandidate(method, path, accepted, contentType, host, route, args));
+        } catch (RejectedExecutionException e) {
+            skipped.increment();
+        }
+    }
+
+    private void runCandidate(String method, String path, List<MediaType> accepted, MediaType contentType, String host,
+                              Route route, Map<String, String> args) {
+        Candidate current = this.candidate;
+        if (current.routes != router.getRoutes()) {
+            // the routes changed since the request was routed
+            skipped.increment();
+            return;
+        }
+        try {
+            RouteMatcher matcher = current.matcher;
+            if (matcher == null) throw new IllegalStateException("The shadow matcher failed to build");
+            long start = System.nanoTime();
+            Negotiation negotiation = Negotiation.of(accepted,
+                    accept -> matcher.match(method, path, accept, contentType, host));
+            RouteMatch match = negotiation != null ? negotiation.match() : null;
+            candidateNanos.add(System.nanoTime() - start);
+            samples.increment();
+            Route candidateRoute = match != null ? match.getRoute() : null;
+            Map<String, String> candidateArgs = match != null ? match.getArgs() : null;
+            if (candidateRoute != route || (route != null && !Objects.equals(args, candidateArgs))) {
+                divergences.increment();
+                logger.warn("Shadow matcher diverges for {} {} (host {}, accept {}, content type {}): router {} {}, candidate {} {}",
+                        method, path, host, accepted, contentType, route, args, candidateRoute, candidateArgs);
+            }
+        } catch (RuntimeException | StackOverflowError e) {
+            failures.increment();
+            logger.warn("Shadow matcher failed for {} {}", method, path, e);
+        }
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @return the number of requests compared
+     */
+    public long getSamples() {
+        return samples.sum();
+    }
+
+    public long getDivergences() {
+        return divergences.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return the number of comparisons rejected by the executor, dropped as the routes changed meanwhile or as the
+     * path is over the limits of the router
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * @return the time spent by the router on the sampled requests
+     */
+    public long getPrimaryNanos() {
+        return primaryNanos.sum();
+    }
+
+    /**
+     * @return the time spent by the candidate on the compared requests
+     */
+    public long getCandidateNanos() {
+        return candidateNanos.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ShadowMatcher[candidate=%s, samples=%d, divergences=%d, failures=%d, skipped=%d, primaryNanos=%d, candidateNanos=%d]",
+                candidateFactory, getSamples(), getDivergences(), getFailures(), getSkipped(), getPrimaryNanos(), getCandidateNanos());
+    }
+
+    private record Candidate(List<Route> routes, RouteMatcher matcher) {
+    }
+}
@@ -27,4 +27,13 @@ public @interface EnableOpenApiRouter {
      * Set to null to disable
      */
     String apiDocsPath() default "/v3/api-docs";
+
+    /**
+     * Algorithm finding the route of a request: the name of a {@link org.resthub.web.springmvc.router.MatchingEngine}
+     * ({@code trie}, {@code linear}, {@code alternation}, {@code compiled}, {@code path-pattern} or {@code safe}) or
+     * the class name of a {@link org.resthub.web.springmvc.router.RouteMatcher.Factory}.
+     * <p>
+     * The property openapi.router.engine takes precedence. Empty for the default engine, {@code trie}.
+     */
+    String engine() default "";
 }
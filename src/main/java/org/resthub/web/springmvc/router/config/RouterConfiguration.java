@@ -1,9 +1,13 @@
 package org.resthub.web.springmvc.router.config;
 
+import org.resthub.web.springmvc.router.MatchingEngine;
+import org.resthub.web.springmvc.router.RouteMatcher;
 import org.resthub.web.springmvc.router.Router;
 import org.resthub.web.springmvc.router.RouterHandlerMapping;
+import org.resthub.web.springmvc.router.ShadowMatcher;
 import org.resthub.web.springmvc.router.parser.ByLineRouterLoader;
 import org.resthub.web.springmvc.router.support.OpenApiSpecController;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
@@ -13,6 +17,7 @@ import org.springframework.context.annotation.ImportAware;
 import org.springframework.core.annotation.AnnotationAttributes;
 import org.springframework.core.type.AnnotationMetadata;
 import org.springframework.format.support.FormattingConversionService;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.servlet.config.annotation.DelegatingWebMvcConfiguration;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurationSupport;
@@ -21,6 +26,10 @@ import org.springframework.web.servlet.resource.ResourceUrlProvider;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -57,10 +66,21 @@ import java.util.List;
  * @see WebMvcConfigurationSupport
  */
 @Configuration
-public class RouterConfiguration extends DelegatingWebMvcConfiguration implements ImportAware {
+public class RouterConfiguration extends DelegatingWebMvcConfiguration implements ImportAware, DisposableBean {
+
+    private static final int SHADOW_QUEUE_SIZE = 1024;
 
     private String annotationRoutes = null;
     private String apiDocsPath = null;
+    private String annotationEngine = null;
+    /**
+     * Runs the shadow comparisons when they are asynchronous, shut down with the context
+     */
+    private ExecutorService shadowExecutor = null;
+    /**
+     * The shadow matcher of the handler mapping, closed with the context
+     */
+    private ShadowMatcher shadowMatcher = null;
 
     /**
      * Return a {@link RouterHandlerMapping} ordered at 0 for mapping
@@ -70,19 +90,40 @@ public class RouterConfiguration extends DelegatingWebMvcConfiguration implement
     public RouterHandlerMapping openApiRouterHandlerMapping(
             Router router,
             @Qualifier("mvcConversionService") FormattingConversionService conversionService,
-            @Qualifier("mvcResourceUrlProvider") ResourceUrlProvider resourceUrlProvider) {
+            @Qualifier("mvcResourceUrlProvider") ResourceUrlProvider resourceUrlProvider,
+            @Value("${openapi.router.shadow.engine:}") String shadowEngine,
+            @Value("${openapi.router.shadow.sampleRate:0.01}") double shadowSampleRate,
+            @Value("${openapi.router.shadow.async:false}") boolean shadowAsync,
+            ApplicationContext applicationContext) {
 
         RouterHandlerMapping handlerMapping = new RouterHandlerMapping(router);
         handlerMapping.setInterceptors(getInterceptors(conversionService, resourceUrlProvider));
         handlerMapping.setOrder(-2);
+        if (StringUtils.hasText(shadowEngine)) {
+            shadowMatcher = new ShadowMatcher(router, createMatcherFactory(shadowEngine.trim(), applicationContext),
+                    shadowSampleRate, shadowAsync ? shadowExecutor() : null);
+            handlerMapping.setShadowMatcher(shadowMatcher);
+        }
         return handlerMapping;
     }
 
     @Bean
     public Router openApiRouter(
-            OpenApiResourceLoader routes
+            OpenApiResourceLoader routes,
+            @Value("${openapi.router.matchCacheSize:0}") int matchCacheSize,
+            @Value("${openapi.router.missCacheSize:0}") int missCacheSize,
+            @Value("${openapi.router.engine:}") String engine,
+            @Value("${openapi.router.maxPathLength:0}") int maxPathLength,
+            @Value("${openapi.router.maxSegments:0}") int maxSegments,
+            ApplicationContext applicationContext
     ) throws IOException {
-        return new Router(routes);
+        Router router = new Router(routes);
+        router.setMatchCacheSize(matchCacheSize);
+        router.setMissCacheSize(missCacheSize);
+        router.setMaxPathLength(maxPathLength);
+        router.setMaxSegments(maxSegments);
+        router.setMatcherFactory(getMatcherFactory(engine, applicationContext));
+        return router;
     }
 
     @Bean
@@ -122,6 +163,7 @@ public class RouterConfiguration extends DelegatingWebMvcConfiguration implement
         if (openApi != null) {
             this.annotationRoutes = String.join(",", List.of(openApi.getStringArray("config")));
             this.apiDocsPath = openApi.getString("apiDocsPath");
+            this.annotationEngine = openApi.getString("engine");
         }
     }
 
@@ -130,4 +172,57 @@ public class RouterConfiguration extends DelegatingWebMvcConfiguration implement
         return this.apiDocsPath;
     }
 
+    /**
+     * @param property the engine name or the {@link RouteMatcher.Factory} class name from the properties, it takes
+     *                 precedence over {@link EnableOpenApiRouter#engine()}
+     * @return the engine, or an instance of the factory class, created and autowired by the application context
+     */
+    private RouteMatcher.Factory getMatcherFactory(String property, ApplicationContext applicationContext) {
+        var engine = StringUtils.hasText(property) ? property.trim() : this.annotationEngine;
+        if (!StringUtils.hasText(engine)) return MatchingEngine.TRIE;
+        return createMatcherFactory(engine, applicationContext);
+    }
+
+    private static RouteMatcher.Factory createMatcherFactory(String engine, ApplicationContext applicationContext) {
+        if (engine.indexOf('.') < 0) return MatchingEngine.fromName(engine);
+        Class<?> type;
+        try {
+            type = ClassUtils.forName(engine, applicationContext.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new IllegalArgumentException("Route matcher factory class not found: " + engine, e);
+        }
+        if (!RouteMatcher.Factory.class.isAssignableFrom(type))
+            throw new IllegalArgumentException(engine + " doesn't implement " + RouteMatcher.Factory.class.getName());
+        return (RouteMatcher.Factory) applicationContext.getAutowireCapableBeanFactory().createBean(type);
+    }
+
+    /**
+     * @return a single daemon thread running the shadow comparisons, rejecting them when it falls behind
+     */
+    private synchronized ExecutorService shadowExecutor() {
+        if (shadowExecutor == null) {
+            shadowExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(SHADOW_QUEUE_SIZE), runnable -> {
+                Thread thread = new Thread(runnable, "openapi-router-shadow");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return shadowExecutor;
+    }
+
+    /**
+     * Stops the shadow comparisons thread, the comparisons still queued are dropped.
+     */
+    @Override
+    public synchronized void destroy() {
+        if (shadowMatcher != null) {
+            shadowMatcher.close();
+            shadowMatcher = null;
+        }
+        if (shadowExecutor != null) {
+            shadowExecutor.shutdownNow();
+            shadowExecutor = null;
+        }
+    }
+
 }
@@ -1,6 +1,8 @@
 package org.resthub.web.springmvc.router.support;
 
+import org.resthub.web.springmvc.router.ActionTemplate;
 import org.resthub.web.springmvc.router.HTTPRequestAdapter;
+import org.resthub.web.springmvc.router.LruCache;
 import org.resthub.web.springmvc.router.Router;
 import org.resthub.web.springmvc.router.exceptions.ActionNotFoundException;
 import org.slf4j.Logger;
@@ -11,8 +13,8 @@ import org.springframework.web.method.HandlerMethod;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Resolve Controller and Action for the given route (that contains the
@@ -22,9 +24,20 @@ import java.util.Map;
  */
 public class RouterHandlerResolver {
 
-    private final Map<String, Object> cachedControllers = new LinkedHashMap<>();
+    private final Map<String, Object> cachedControllers = new ConcurrentHashMap<>();
 
-    private final Map<String, HandlerMethod> cachedHandlers = new LinkedHashMap<>();
+    private final Map<String, HandlerMethod> cachedHandlers = new ConcurrentHashMap<>();
+
+    /**
+     * Handlers of the routes with an {@link ActionTemplate}, per route and keyed by the values of the placeholders
+     */
+    private final Map<Router.Route, LruCache<Object, HandlerMethod>> dynamicHandlers = new ConcurrentHashMap<>();
+
+    /**
+     * Maximum number of handlers kept per route with an {@link ActionTemplate}, the values come from the request
+     * path, the least recently used handlers are evicted
+     */
+    private static final int MAX_DYNAMIC_HANDLERS = 256;
 
     private static final Logger logger = LoggerFactory.getLogger(RouterHandlerResolver.class);
 
@@ -39,6 +52,14 @@ public class RouterHandlerResolver {
         this.cachedControllers.put(key.toLowerCase(), controller);
     }
 
+    /**
+     * Drops the handlers of the routes with an {@link ActionTemplate}, called when the routes change so the removed
+     * routes aren't retained.
+     */
+    public void clearDynamicHandlers() {
+        this.dynamicHandlers.clear();
+    }
+
     /**
      * Returns a proper HandlerMethod given the matching Route
      *
@@ -49,6 +70,24 @@ public class RouterHandlerResolver {
      */
     public HandlerMethod resolveHandler(Router.Route route, String fullAction, HTTPRequestAdapter req) throws ActionNotFoundException {
 
+        ActionTemplate template = route.getActionTemplate();
+        if (template != null && req != null && req.routeArgs != null) {
+            // look the handler up by the values of the placeholders, without the action string
+            LruCache<Object, HandlerMethod> handlers =
+                    this.dynamicHandlers.computeIfAbsent(route, r -> new LruCache<>(MAX_DYNAMIC_HANDLERS));
+            Object key = req.actionKey != null ? req.actionKey : template.key(req.routeArgs);
+            HandlerMethod handlerMethod = handlers.get(key);
+            if (handlerMethod == null) {
+                handlerMethod = this.resolveCachedHandler(fullAction, route);
+                handlers.put(key, handlerMethod);
+            }
+            return handlerMethod;
+        }
+        return this.resolveCachedHandler(fullAction, route);
+    }
+
+    private HandlerMethod resolveCachedHandler(String fullAction, Router.Route route) throws ActionNotFoundException {
+
         HandlerMethod handlerMethod;
 
         // check if the Handler is already cached
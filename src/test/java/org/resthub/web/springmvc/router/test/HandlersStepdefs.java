@@ -8,8 +8,14 @@ import io.swagger.v3.core.util.Json;
 import io.swagger.v3.parser.OpenAPIV3Parser;
 import io.swagger.v3.parser.core.models.ParseOptions;
 import io.swagger.v3.parser.core.models.SwaggerParseResult;
+import jakarta.servlet.DispatcherType;
 import org.resthub.web.springmvc.router.HTTPRequestAdapter;
+import org.resthub.web.springmvc.router.MatchingEngine;
+import org.resthub.web.springmvc.router.RouteMatcher;
+import org.resthub.web.springmvc.router.Router;
 import org.resthub.web.springmvc.router.RouterHandlerMapping;
+import org.resthub.web.springmvc.router.ShadowMatcher;
+import org.resthub.web.springmvc.router.parser.ByLineRouterLoader;
 import org.resthub.web.springmvc.router.support.RouterHandler;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -29,9 +35,13 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 
 public class HandlersStepdefs {
@@ -53,6 +63,8 @@ public class HandlersStepdefs {
     private String host = "example.org";
 
     private HandlerExecutionChain chain;
+    private Object previousRouting;
+    private final AtomicInteger candidateBuilds = new AtomicInteger();
     private MockHttpServletResponse lastResponse;
 
     @Given("^I have a web application with the config locations \"([^\"]*)\"$")
@@ -267,12 +279,149 @@ public class HandlersStepdefs {
         I_send_the_HTTP_request(method, url);
     }
 
+    @Given("^the requests are compared with a matcher (finding the same routes|finding no route|failing|failing to build)$")
+    public void the_requests_are_compared_with_a_matcher(String behaviour) throws Throwable {
+
+        RouteMatcher.Factory candidate = switch (behaviour) {
+            case "finding no route" -> routes -> (method, path, accept, contentType, host) -> null;
+            case "failing" -> routes -> (method, path, accept, contentType, host) -> {
+                throw new IllegalStateException("failing candidate");
+            };
+            case "failing to build" -> routes -> {
+                throw new IllegalStateException("failing candidate");
+            };
+            default -> MatchingEngine.LINEAR;
+        };
+        compare_with(candidate, null);
+    }
+
+    @Given("^the requests are compared with a matcher counting its builds$")
+    public void the_requests_are_compared_with_a_matcher_counting_its_builds() throws Throwable {
+
+        compare_with(routes -> {
+            candidateBuilds.incrementAndGet();
+            return MatchingEngine.LINEAR.create(routes);
+        }, null);
+    }
+
+    @Given("^the router matches the paths of at most (\\d+) characters$")
+    public void the_router_matches_the_paths_of_at_most_characters(int maxPathLength) throws Throwable {
+
+        this.wac.getBean(Router.class).setMaxPathLength(maxPathLength);
+    }
+
+    @Given("^the requests are compared on a saturated executor$")
+    public void the_requests_are_compared_on_a_saturated_executor() throws Throwable {
+
+        compare_with(MatchingEngine.LINEAR, command -> {
+            throw new RejectedExecutionException("saturated executor");
+        });
+    }
+
+    private void compare_with(RouteMatcher.Factory candidate, Executor executor) {
+        RouterHandlerMapping mapping = (RouterHandlerMapping) this.hm;
+        mapping.setShadowMatcher(new ShadowMatcher(this.wac.getBean(Router.class), candidate, 1, executor));
+    }
+
+    @When("^I add the route \"([^\"]*)\" \"([^\"]*)\" \"([^\"]*)\" to the router$")
+    public void I_add_the_route_to_the_router(String method, String path, String action) throws Throwable {
+
+        this.wac.getBean(Router.class).addRoute(new ByLineRouterLoader().buildRoute(method, path, action));
+    }
+
+    @Then("^the shadow matcher should count (\\d+) samples?, (\\d+) divergences?, (\\d+) failures? and (\\d+) skipped$")
+    public void the_shadow_matcher_should_count(long samples, long divergences, long failures, long skipped) throws Throwable {
+
+        ShadowMatcher shadow = ((RouterHandlerMapping) this.hm).getShadowMatcher();
+        assertThat(shadow.getSamples()).isEqualTo(samples);
+        assertThat(shadow.getDivergences()).isEqualTo(divergences);
+        assertThat(shadow.getFailures()).isEqualTo(failures);
+        assertThat(shadow.getSkipped()).isEqualTo(skipped);
+    }
+
+    @Then("^the replaced matcher should have been built (\\d+) times?$")
+    public void the_replaced_matcher_should_have_been_built(int builds) throws Throwable {
+
+        assertThat(candidateBuilds.get()).isEqualTo(builds);
+    }
+
+    @When("^I look the handler up again$")
+    public void I_look_the_handler_up_again() throws Throwable {
+
+        look_the_handler_up_again();
+    }
+
+    @When("^the request is forwarded to \"([^\"]*)\"$")
+    public void the_request_is_forwarded_to(String url) throws Throwable {
+
+        request.setDispatcherType(DispatcherType.FORWARD);
+        request.setRequestURI(url);
+        request.setPathInfo(url);
+        look_the_handler_up_again();
+    }
+
+    @When("^the request is dispatched to the error page$")
+    public void the_request_is_dispatched_to_the_error_page() throws Throwable {
+
+        request.setDispatcherType(DispatcherType.ERROR);
+        look_the_handler_up_again();
+    }
+
+    @When("^the request method is overridden with \"([^\"]*)\"$")
+    public void the_request_method_is_overridden_with(String method) throws Throwable {
+
+        request.addHeader("X-HTTP-Method-Override", method);
+        look_the_handler_up_again();
+    }
+
+    @Then("^the URI template variable \"([^\"]*)\" can't be changed to \"([^\"]*)\"$")
+    @SuppressWarnings("unchecked")
+    public void the_URI_template_variable_can_t_be_changed_to(String name, String value) throws Throwable {
+
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        assertThatThrownBy(() -> variables.put(name, value)).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    private void look_the_handler_up_again() throws Exception {
+        previousRouting = request.getAttribute(HTTPRequestAdapter.REQUEST_ATTRIBUTE);
+        chain = this.hm.getHandler(request);
+    }
+
+    @Then("^the request should not be routed again$")
+    public void the_request_should_not_be_routed_again() throws Throwable {
+
+        assertThat(request.getAttribute(HTTPRequestAdapter.REQUEST_ATTRIBUTE)).isSameAs(previousRouting);
+    }
+
+    @Then("^the request should be routed again$")
+    public void the_request_should_be_routed_again() throws Throwable {
+
+        assertThat(request.getAttribute(HTTPRequestAdapter.REQUEST_ATTRIBUTE)).isNotSameAs(previousRouting);
+    }
+
+    @Then("^the URI template variable \"([^\"]*)\" should be \"([^\"]*)\"$")
+    @SuppressWarnings("unchecked")
+    public void the_URI_template_variable_should_be(String name, String value) throws Throwable {
+
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        assertThat(variables.get(name)).isEqualTo(value);
+    }
+
     @Then("^no handler should be found$")
     public void no_handler_should_be_found() throws Throwable {
 
         assertThat(chain).isNull();
     }
 
+    @Then("^the current request should be the routed request$")
+    public void the_current_request_should_be_the_routed_request() throws Throwable {
+
+        HTTPRequestAdapter current = HTTPRequestAdapter.getCurrent();
+        assertThat(current).isSameAs(request.getAttribute(HTTPRequestAdapter.REQUEST_ATTRIBUTE));
+        assertThat(current.route).isNotNull();
+        assertThat(current.routeArgs.get("param")).isEqualTo("myparam");
+    }
+
     @Then("^the request should be handled by \"([^\"]*)\"$")
     public void the_request_should_be_handled_by(String controllerAction) throws Throwable {
 
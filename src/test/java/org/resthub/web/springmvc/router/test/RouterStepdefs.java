@@ -0,0 +1,422 @@
+package org.resthub.web.springmvc.router.test;
+
+import io.cucumber.datatable.DataTable;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.resthub.web.springmvc.router.HTTPRequestAdapter;
+import org.resthub.web.springmvc.router.MatchingEngine;
+import org.resthub.web.springmvc.router.RouteOverlaps;
+import org.resthub.web.springmvc.router.RouteMatch;
+import org.resthub.web.springmvc.router.RouteMatcher;
+import org.resthub.web.springmvc.router.Router;
+import org.resthub.web.springmvc.router.config.OpenApiResourceLoader;
+import org.resthub.web.springmvc.router.parser.ByLineRouterLoader;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RouterStepdefs {
+
+    private final Router router;
+    private Map<String, String> routed;
+    private HTTPRequestAdapter request;
+    private Router.Route negotiated;
+    private MockHttpServletRequest servletRequest;
+    private String base;
+    private List<Router.Route> routesRead;
+
+    public RouterStepdefs() throws IOException {
+        this.router = new Router(new OpenApiResourceLoader(null, null));
+    }
+
+    @Given("^a router loading the route files \"([^\"]*)\"$")
+    public void a_router_loading_the_route_files(String files) throws Throwable {
+        List<Resource> resources = new ArrayList<>();
+        for (String file : files.split(",")) {
+            resources.add(new ClassPathResource(file.trim()));
+        }
+        router.load(resources);
+    }
+
+    @Given("^a router with the routes:$")
+    public void a_router_with_the_routes(DataTable routes) throws Throwable {
+        for (Map<String, String> route : routes.asMaps()) {
+            router.addRoute(new ByLineRouterLoader().buildRoute(route.get("method"), route.get("path"), route.get("action"),
+                    route.get("params"), route.get("accepts")));
+        }
+    }
+
+    @Given("^the router uses the \"([^\"]*)\" engine$")
+    public void the_router_uses_the_engine(String engine) throws Throwable {
+        router.setEngine(MatchingEngine.fromName(engine));
+    }
+
+    @Then("^the requests should be routed like by the linear scan:$")
+    public void the_requests_should_be_routed_like_by_the_linear_scan(DataTable requests) throws Throwable {
+        List<RequestItem> items = requests.asMaps().stream().map(RequestItem::new).toList();
+        List<Map<String, String>> routed = items.stream().map(this::route).toList();
+        MatchingEngine engine = router.getEngine();
+        router.setEngine(MatchingEngine.LINEAR);
+        for (int i = 0; i < items.size(); i++) {
+            RequestItem item = items.get(i);
+            assertThat(routed.get(i).get("action"))
+                    .withFailMessage("%s engine routes %s to %s", engine, item, routed.get(i))
+                    .isEqualTo(item.action);
+            assertThat(routed.get(i))
+                    .withFailMessage("%s engine routes %s to %s, the linear scan to %s", engine, item, routed.get(i), route(item))
+                    .isEqualTo(route(item));
+        }
+        router.setEngine(engine);
+    }
+
+    @Given("^the paths are limited to (\\d+) characters and (\\d+) segments$")
+    public void the_paths_are_limited_to_characters_and_segments(int maxPathLength, int maxSegments) throws Throwable {
+        router.setMaxPathLength(maxPathLength);
+        router.setMaxSegments(maxSegments);
+    }
+
+    @Given("^a match cache of (\\d+) requests$")
+    public void a_match_cache_of_requests(int size) throws Throwable {
+        router.setMatchCacheSize(size);
+    }
+
+    @Given("^a miss cache of (\\d+) requests$")
+    public void a_miss_cache_of_requests(int size) throws Throwable {
+        router.setMissCacheSize(size);
+    }
+
+    @Given("^the route \"([^\"]*)\" \"([^\"]*)\" \"([^\"]*)\" is prepended while the next request is matched$")
+    public void the_route_is_prepended_while_the_next_request_is_matched(String method, String path, String action) throws Throwable {
+        Router.Route route = new ByLineRouterLoader().buildRoute(method, path, action);
+        AtomicBoolean pending = new AtomicBoolean(true);
+        router.setMatcherFactory(routes -> {
+            RouteMatcher matcher = MatchingEngine.TRIE.create(routes);
+            return (requestMethod, requestPath, accept, contentType, host) -> {
+                RouteMatch match = matcher.match(requestMethod, requestPath, accept, contentType, host);
+                if (pending.getAndSet(false)) {
+                    router.prependRoute(route);
+                }
+                return match;
+            };
+        });
+    }
+
+    @Given("^the routes are replaced while the next request is matched by:$")
+    public void the_routes_are_replaced_while_the_next_request_is_matched_by(DataTable routes) throws Throwable {
+        List<Router.Route> replacement = build(routes);
+        AtomicBoolean pending = new AtomicBoolean(true);
+        router.setMatcherFactory(table -> {
+            RouteMatcher matcher = MatchingEngine.TRIE.create(table);
+            return (requestMethod, requestPath, accept, contentType, host) -> {
+                RouteMatch match = matcher.match(requestMethod, requestPath, accept, contentType, host);
+                if (pending.getAndSet(false)) {
+                    replace_the_routes(replacement);
+                }
+                return match;
+            };
+        });
+    }
+
+    @When("^I read the routes$")
+    public void I_read_the_routes() throws Throwable {
+        routesRead = router.getRoutes();
+    }
+
+    @When("^I replace the routes by:$")
+    public void I_replace_the_routes_by(DataTable routes) throws Throwable {
+        replace_the_routes(build(routes));
+    }
+
+    @When("^I route \"([^\"]*)\" \"([^\"]*)\"$")
+    public void I_route(String method, String path) throws Throwable {
+        routed = router.route(method, path);
+    }
+
+    @When("^I route \"([^\"]*)\" \"([^\"]*)\" accepting \"([^\"]*)\"$")
+    public void I_route_accepting(String method, String path, String accept) throws Throwable {
+        routed = router.route(method, path, MediaType.parseMediaType(accept), null, null);
+    }
+
+    @When("^I negotiate the route of \"([^\"]*)\" \"([^\"]*)\" accepting \"(.*)\"$")
+    public void I_negotiate_the_route_of_accepting(String method, String path, String accept) throws Throwable {
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest(method, path);
+        servletRequest.setPathInfo(path);
+        servletRequest.addHeader("Accept", accept);
+        request = HTTPRequestAdapter.parseRequest(servletRequest);
+        negotiated = router.findRoute(request);
+    }
+
+    @Given("^a servlet request \"([^\"]*)\" \"([^\"]*)\" with the headers:$")
+    public void a_servlet_request_with_the_headers(String method, String path, DataTable headers) throws Throwable {
+        servletRequest = new MockHttpServletRequest(method, path);
+        servletRequest.setPathInfo(path);
+        for (List<String> header : headers.asLists()) {
+            servletRequest.addHeader(header.get(0), header.get(1));
+        }
+    }
+
+    @Given("^the servlet request is the current request$")
+    public void the_servlet_request_is_the_current_request() throws Throwable {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(servletRequest));
+    }
+
+    @When("^I parse the servlet request$")
+    public void I_parse_the_servlet_request() throws Throwable {
+        request = HTTPRequestAdapter.parseRequest(servletRequest);
+    }
+
+    @When("^I get the current request$")
+    public void I_get_the_current_request() throws Throwable {
+        request = HTTPRequestAdapter.getCurrent();
+    }
+
+    @When("^the bases of (\\d+) other hosts are read( along with the request base)?$")
+    public void the_bases_of_other_hosts_are_read(int count, String alongWithTheRequestBase) throws Throwable {
+        for (int i = 0; i < count; i++) {
+            HTTPRequestAdapter other = new HTTPRequestAdapter();
+            other.domain = "host" + i + ".example.org";
+            other.port = 80;
+            other.getBase();
+            if (alongWithTheRequestBase != null) {
+                HTTPRequestAdapter.parseRequest(servletRequest).getBase();
+            }
+        }
+    }
+
+    @When("^the header \"([^\"]*)\" \"([^\"]*)\" is added to the servlet request$")
+    public void the_header_is_added_to_the_servlet_request(String name, String value) throws Throwable {
+        servletRequest.addHeader(name, value);
+    }
+
+    @When("^I detach the request from the servlet request$")
+    public void I_detach_the_request_from_the_servlet_request() throws Throwable {
+        request.detach();
+    }
+
+    @When("^I find the route of \"([^\"]*)\" \"([^\"]*)\"$")
+    public void I_find_the_route_of(String method, String path) throws Throwable {
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest(method, path);
+        servletRequest.setPathInfo(path);
+        request = HTTPRequestAdapter.parseRequest(servletRequest);
+        negotiated = router.findRoute(request);
+    }
+
+    @When("^I add the route \"([^\"]*)\" \"([^\"]*)\" \"([^\"]*)\"$")
+    public void I_add_the_route(String method, String path, String action) throws Throwable {
+        router.addRoute(new ByLineRouterLoader().buildRoute(method, path, action));
+    }
+
+    @When("^I prepend the route \"([^\"]*)\" \"([^\"]*)\" \"([^\"]*)\"$")
+    public void I_prepend_the_route(String method, String path, String action) throws Throwable {
+        router.prependRoute(new ByLineRouterLoader().buildRoute(method, path, action));
+    }
+
+    @Then("^the request should be routed to \"([^\"]*)\"$")
+    public void the_request_should_be_routed_to(String action) throws Throwable {
+        assertThat(routed.get("action")).isEqualTo(action);
+    }
+
+    @Then("^the acceptable types should be \"(.*)\"$")
+    public void the_acceptable_types_should_be(String types) throws Throwable {
+        assertThat(MediaType.toString(request.acceptedTypes)).isEqualTo(types);
+    }
+
+    @Then("^the acceptable type \"([^\"]*)\" should be the known media type$")
+    public void the_acceptable_type_should_be_the_known_media_type(String type) throws Throwable {
+        MediaType known = HTTPRequestAdapter.resolveFormat(type);
+        MediaType acceptable = request.acceptedTypes.stream().filter(known::equals).findFirst().orElseThrow();
+        assertThat(acceptable).isSameAs(known);
+    }
+
+    @Then("^the request should be negotiated to \"([^\"]*)\" for \"([^\"]*)\"$")
+    public void the_request_should_be_negotiated_to_for(String action, String type) throws Throwable {
+        assertThat(negotiated).withFailMessage("no route negotiated for %s", request.acceptedTypes).isNotNull();
+        assertThat(negotiated.action).isEqualTo(action);
+        assertThat(request.accept.toString()).isEqualTo(type);
+    }
+
+    @Then("^the route found should be \"([^\"]*)\"$")
+    public void the_route_found_should_be(String action) throws Throwable {
+        assertThat(negotiated).withFailMessage("no route found for %s %s", request.method, request.path).isNotNull();
+        assertThat(negotiated.action).isEqualTo(action);
+    }
+
+    @Then("^the request should (not )?be a HEAD request routed to a GET route$")
+    public void the_request_should_be_a_HEAD_request_routed_to_a_GET_route(String not) throws Throwable {
+        assertThat(request.headRoutedToGet).isEqualTo(not == null);
+    }
+
+    @Then("^no route should be negotiated$")
+    public void no_route_should_be_negotiated() throws Throwable {
+        assertThat(negotiated).isNull();
+    }
+
+    @Then("^the request header \"([^\"]*)\" should be \"([^\"]*)\"$")
+    public void the_request_header_should_be(String name, String value) throws Throwable {
+        assertThat(request.headers.get(name).value()).isEqualTo(value);
+    }
+
+    @Then("^the request should have no header \"([^\"]*)\"$")
+    public void the_request_should_have_no_header(String name) throws Throwable {
+        assertThat(request.headers.get(name)).isNull();
+    }
+
+    @Then("^the request base should be \"([^\"]*)\"$")
+    public void the_request_base_should_be(String expected) throws Throwable {
+        base = request.getBase();
+        assertThat(base).isEqualTo(expected);
+    }
+
+    @Then("^the next request to the same host should get (the same|a new) base$")
+    public void the_next_request_to_the_same_host_should_get_base(String which) throws Throwable {
+        String next = HTTPRequestAdapter.parseRequest(servletRequest).getBase();
+        assertThat(next).isEqualTo(base);
+        if ("the same".equals(which)) {
+            assertThat(next).isSameAs(base);
+        } else {
+            assertThat(next).isNotSameAs(base);
+        }
+    }
+
+    @Then("^the current request should be kept in the servlet request$")
+    public void the_current_request_should_be_kept_in_the_servlet_request() throws Throwable {
+        assertThat(servletRequest.getAttribute(HTTPRequestAdapter.REQUEST_ATTRIBUTE)).isSameAs(request);
+    }
+
+    @Then("^the current request should be the same on the next lookup$")
+    public void the_current_request_should_be_the_same_on_the_next_lookup() throws Throwable {
+        assertThat(HTTPRequestAdapter.getCurrent()).isSameAs(request);
+    }
+
+    @Then("^the route argument \"([^\"]*)\" should be \"([^\"]*)\"$")
+    public void the_route_argument_should_be(String name, String value) throws Throwable {
+        assertThat(routed.get(name)).isEqualTo(value);
+    }
+
+    @Then("^no route should match the request$")
+    public void no_route_should_match_the_request() throws Throwable {
+        assertThat(routed).isEmpty();
+    }
+
+    @Then("^the match cache should count (\\d+) hits?$")
+    public void the_match_cache_should_count_hits(long hits) throws Throwable {
+        assertThat(router.getMatchCache().getHits()).isEqualTo(hits);
+    }
+
+    @Then("^the match cache should hold (\\d+) requests?$")
+    public void the_match_cache_should_hold_requests(int size) throws Throwable {
+        assertThat(router.getMatchCache().size()).isEqualTo(size);
+    }
+
+    @Then("^the match cache should count (\\d+) miss(?:es)?$")
+    public void the_match_cache_should_count_misses(long misses) throws Throwable {
+        assertThat(router.getMatchCache().getMisses()).isEqualTo(misses);
+    }
+
+    @Then("^the miss cache should hold (\\d+) requests?$")
+    public void the_miss_cache_should_hold_requests(int size) throws Throwable {
+        assertThat(router.getMissCache().size()).isEqualTo(size);
+    }
+
+    @Then("^the miss cache should count (\\d+) miss(?:es)?$")
+    public void the_miss_cache_should_count_misses(long misses) throws Throwable {
+        assertThat(router.getMissCache().getMisses()).isEqualTo(misses);
+    }
+
+    @Then("^the miss cache should count (\\d+) hits?$")
+    public void the_miss_cache_should_count_hits(long hits) throws Throwable {
+        assertThat(router.getMissCache().getHits()).isEqualTo(hits);
+    }
+
+    @Then("^the routes matched by their regex should be:$")
+    public void the_routes_matched_by_their_regex_should_be(DataTable actions) throws Throwable {
+        assertThat(router.getBacktrackingRoutes().stream().map(route -> route.action).toList())
+                .isEqualTo(actions.asList());
+    }
+
+    @Then("^the routes read should be \"([^\"]*)\"$")
+    public void the_routes_read_should_be(String actions) throws Throwable {
+        assertThat(actions(routesRead)).isEqualTo(actions);
+    }
+
+    @Then("^the routes should be \"([^\"]*)\"$")
+    public void the_routes_should_be(String actions) throws Throwable {
+        assertThat(actions(router.getRoutes())).isEqualTo(actions);
+    }
+
+    @Then("^the unreachable routes should be:$")
+    public void the_unreachable_routes_should_be(DataTable routes) throws Throwable {
+        RouteOverlaps overlaps = router.getOverlaps();
+        List<Map<String, String>> unreachable = overlaps.getUnreachableRoutes().stream()
+                .map(route -> Map.of("action", route.action, "shadowed by", overlaps.getShadowingRoute(route).action))
+                .toList();
+        assertThat(unreachable).isEqualTo(routes.asMaps());
+    }
+
+    @Then("^the independence of the routes should be:$")
+    public void the_independence_of_the_routes_should_be(DataTable routes) throws Throwable {
+        for (Map<String, String> route : routes.asMaps()) {
+            Router.Route declared = router.getRoutes().stream()
+                    .filter(r -> r.action.equals(route.get("action"))).findFirst().orElseThrow();
+            assertThat(router.getOverlaps().isIndependent(declared))
+                    .withFailMessage("%s independent", declared)
+                    .isEqualTo(Boolean.parseBoolean(route.get("independent")));
+        }
+    }
+
+    private List<Router.Route> build(DataTable routes) {
+        List<Router.Route> built = new ArrayList<>();
+        for (Map<String, String> route : routes.asMaps()) {
+            built.add(new ByLineRouterLoader().buildRoute(route.get("method"), route.get("path"), route.get("action")));
+        }
+        return built;
+    }
+
+    private void replace_the_routes(List<Router.Route> replacement) {
+        router.updateRoutes(routes -> {
+            routes.clear();
+            routes.addAll(replacement);
+        });
+    }
+
+    private static String actions(List<Router.Route> routes) {
+        return String.join(",", routes.stream().map(route -> route.action).toList());
+    }
+
+    private Map<String, String> route(RequestItem item) {
+        return router.route(item.method, item.path, item.accept, null, item.host);
+    }
+
+    public static class RequestItem {
+        public String method;
+        public String path;
+        public String host;
+        public MediaType accept;
+        public String action;
+
+        public RequestItem(Map<String, String> request) {
+            this.method = request.get("method");
+            this.path = request.get("path");
+            this.host = request.get("host");
+            this.accept = request.get("accept") != null ? HTTPRequestAdapter.resolveFormat(request.get("accept")) : null;
+            this.action = request.get("action");
+        }
+
+        @Override
+        public String toString() {
+            return method + " " + path + " (host " + host + ", accept " + accept + ")";
+        }
+    }
+}
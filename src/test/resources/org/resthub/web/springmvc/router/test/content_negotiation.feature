@@ -0,0 +1,54 @@
+Feature: Content negotiation
+  As a developer declaring the media types of a route
+  I want the requests to be routed by the media types they accept
+  In order to serve every representation from its own action
+
+  Background:
+    Given a router with the routes:
+      | method | path    | action                | accepts          |
+      | GET    | /report | reportController.json | application/json |
+      | GET    | /report | reportController.html | text/html        |
+
+  Scenario: Routing a request accepting a media type of the route
+    When I route "GET" "/report" accepting "application/json"
+    Then the request should be routed to "reportController.json"
+
+  Scenario: Not routing a request accepting none of the media types of the route
+    When I route "GET" "/report" accepting "text/plain"
+    Then no route should match the request
+
+  Scenario: Ordering the acceptable types by quality, specificity and header order
+    When I negotiate the route of "GET" "/report" accepting "*/*;q=0.1, text/*;q=0.8, application/json;q=0.5, text/plain;q=0.8, application/xml;q=0.5"
+    Then the acceptable types should be "text/plain, text/*, application/json, application/xml, */*"
+
+  Scenario: Dropping the acceptable types of zero quality
+    When I negotiate the route of "GET" "/report" accepting "application/json;q=0, text/html"
+    Then the acceptable types should be "text/html"
+    And the request should be negotiated to "reportController.html" for "text/html"
+
+  Scenario: Splitting the Accept header on the commas outside of the quoted values
+    When I negotiate the route of "GET" "/report" accepting "application/vnd.report;title="a, b", application/json"
+    Then the acceptable types should be "application/vnd.report;title="a, b", application/json"
+    And the request should be negotiated to "reportController.json" for "application/json"
+
+  Scenario: Replacing the known acceptable types by their constant
+    When I negotiate the route of "GET" "/report" accepting "application/json;q=0.9, text/html;q=0.5"
+    Then the acceptable type "application/json" should be the known media type
+    And the acceptable type "text/html" should be the known media type
+
+  Scenario Outline: Negotiating the route of the most preferred acceptable type
+    When I negotiate the route of "GET" "/report" accepting "<accept>"
+    Then the request should be negotiated to "<action>" for "<type>"
+
+    Examples:
+      | accept                                 | action                | type             |
+      | application/json, text/html            | reportController.json | application/json |
+      | text/html, application/json            | reportController.html | text/html        |
+      | text/html;q=0.5, application/json      | reportController.json | application/json |
+      | text/plain, image/png, text/html;q=0.1 | reportController.html | text/html        |
+
+  Scenario: Looking a request up once when no route matches its path
+    Given a miss cache of 100 requests
+    When I negotiate the route of "GET" "/missing" accepting "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8"
+    Then no route should be negotiated
+    And the miss cache should hold 1 request
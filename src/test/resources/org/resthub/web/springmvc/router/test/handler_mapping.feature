@@ -91,8 +91,117 @@ Feature: Handler mapping support
     When I send the HTTP request "GET" "/context/servlet/simpleaction"
     Then the request should be handled by "myTestController.simpleAction"
 
+  Scenario: Mapping a request with duplicate slashes with a servlet path and a context path
+    Given I have a web application configured locations "/simpleTestContext.xml" servletPath "/servlet" contextPath "/context"
+    When I send the HTTP request "GET" "/context/servlet//simpleaction"
+    Then the request should be handled by "myTestController.simpleAction"
+
   # Testing issue https://github.com/resthub/springmvc-router/issues/41
   Scenario: Mapping a request to the index with a null pathInfo
     Given I have a web application configured locations "/simpleTestContext.xml" servletPath "/" contextPath "/context"
     When I send the HTTP request "GET" "/context/simpleaction" with a null pathInfo
-    Then the request should be handled by "myTestController.simpleAction"
\ No newline at end of file
+    Then the request should be handled by "myTestController.simpleAction"
+
+  Scenario: Comparing the requests with a matcher finding the same routes
+    Given I have a web application with the config locations "/simpleTestContext.xml"
+    And the requests are compared with a matcher finding the same routes
+    When I send the HTTP request "GET" "/simpleaction"
+    And I send the HTTP request "GET" "/noroute"
+    Then the shadow matcher should count 2 samples, 0 divergences, 0 failures and 0 skipped
+
+  Scenario: Comparing the requests with a matcher rebuilt when a route is added
+    Given I have a web application with the config locations "/simpleTestContext.xml"
+    And the requests are compared with a matcher finding the same routes
+    When I add the route "GET" "/shadow/added" "myTestController.simpleAction" to the router
+    And I send the HTTP request "GET" "/shadow/added"
+    Then the request should be handled by "myTestController.simpleAction"
+    And the shadow matcher should count 1 sample, 0 divergences, 0 failures and 0 skipped
+
+  Scenario: Counting the divergences of the compared matcher
+    Given I have a web application with the config locations "/simpleTestContext.xml"
+    And the requests are compared with a matcher finding no route
+    When I send the HTTP request "GET" "/simpleaction"
+    Then the request should be handled by "myTestController.simpleAction"
+    When I send the HTTP request "GET" "/noroute"
+    Then no handler should be found
+    And the shadow matcher should count 2 samples, 1 divergence, 0 failures and 0 skipped
+
+  Scenario Outline: Counting the failures of the compared matcher
+    Given I have a web application with the config locations "/simpleTestContext.xml"
+    And the requests are compared with a matcher <behaviour>
+    When I send the HTTP request "GET" "/simpleaction"
+    Then the request should be handled by "myTestController.simpleAction"
+    And the shadow matcher should count 0 samples, 0 divergences, 1 failure and 0 skipped
+
+    Examples:
+      | behaviour        |
+      | failing          |
+      | failing to build |
+
+  Scenario: Counting the comparisons rejected by the executor
+    Given I have a web application with the config locations "/simpleTestContext.xml"
+    And the requests are compared on a saturated executor
+    When I send the HTTP request "GET" "/simpleaction"
+    Then the request should be handled by "myTestController.simpleAction"
+    And the shadow matcher should count 0 samples, 0 divergences, 0 failures and 1 skipped
+
+  Scenario: Skipping the comparison of a path over the limits of the router
+    Given I have a web application with the config locations "/simpleTestContext.xml"
+    And the requests are compared with a matcher finding the same routes
+    And the router matches the paths of at most 8 characters
+    When I send the HTTP request "GET" "/simpleaction"
+    Then no handler should be found
+    And the shadow matcher should count 0 samples, 0 divergences, 0 failures and 1 skipped
+
+  Scenario: Replacing the compared matcher
+    Given I have a web application with the config locations "/simpleTestContext.xml"
+    And the requests are compared with a matcher counting its builds
+    And the requests are compared with a matcher finding the same routes
+    When I add the route "GET" "/shadow/added" "myTestController.simpleAction" to the router
+    And I send the HTTP request "GET" "/shadow/added"
+    Then the replaced matcher should have been built 1 time
+    And the shadow matcher should count 1 sample, 0 divergences, 0 failures and 0 skipped
+
+  Scenario: Reusing the routing of a request looked up again
+    Given I have a web application with the config locations "/simpleTestContext.xml"
+    When I send the HTTP request "GET" "/param/myparam"
+    And I look the handler up again
+    Then the request should not be routed again
+    And the request should be handled by "myTestController.paramAction"
+    And the URI template variable "param" should be "myparam"
+
+  Scenario: Reusing the routed request as the current request
+    Given I have a web application with the config locations "/simpleTestContext.xml"
+    When I send the HTTP request "GET" "/param/myparam"
+    Then the request should be handled by "myTestController.paramAction"
+    And the current request should be the routed request
+
+  Scenario: Routing a forwarded request again
+    Given I have a web application with the config locations "/simpleTestContext.xml"
+    When I send the HTTP request "GET" "/simpleaction"
+    And the request is forwarded to "/param/forwarded"
+    Then the request should be routed again
+    And the request should be handled by "myTestController.paramAction"
+    And the URI template variable "param" should be "forwarded"
+
+  Scenario: Routing a request dispatched to the error page again
+    Given I have a web application with the config locations "/simpleTestContext.xml"
+    When I send the HTTP request "GET" "/simpleaction"
+    And the request is dispatched to the error page
+    Then the request should be routed again
+    And the request should be handled by "myTestController.simpleAction"
+
+  Scenario: Routing a request again once its method is overridden
+    Given I have a web application with the config locations "/simpleTestContext.xml"
+    When I send the HTTP request "GET" "/overridemethod"
+    And the request method is overridden with "PUT"
+    Then the request should be routed again
+    And the request should be handled by "myTestController.overrideMethod"
+
+  Scenario: Exposing read only route arguments to the handlers
+    Given I have a web application with the config locations "/simpleTestContext.xml"
+    When I send the HTTP request "GET" "/param/myparam"
+    Then the URI template variable "param" can't be changed to "changed"
+    When I look the handler up again
+    Then the request should not be routed again
+    And the URI template variable "param" should be "myparam"
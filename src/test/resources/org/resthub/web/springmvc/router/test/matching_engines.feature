@@ -0,0 +1,177 @@
+Feature: Matching engines
+  As a developer choosing a matching engine
+  I want every engine to route the requests like the routes tried one after the other
+  In order to switch engines without changing the routing
+
+  Scenario Outline: Routing the requests of the route files with the <engine> engine
+    Given a router loading the route files "mappingroutes.conf,bindingroutes.conf,engineroutes.conf"
+    And the router uses the "<engine>" engine
+    Then the requests should be routed like by the linear scan:
+      | method  | path                        | host             | accept           | action                                     |
+      | GET     | /simpleaction               |                  |                  | myTestController.simpleAction              |
+      | HEAD    | /simpleaction               |                  |                  | myTestController.simpleAction              |
+      | HEAD    | /http                       |                  |                  | myTestController.httpAction                |
+      | PUT     | /http                       |                  |                  | myTestController.httpAction                |
+      | OPTIONS | /http                       |                  |                  | myTestController.anyMethodAction           |
+      | HEAD    | /head/explicit              |                  |                  | myTestController.headAction                |
+      | HEAD    | /head/implicit              |                  |                  | myTestController.getAction                 |
+      | GET     | /param                      |                  |                  | myTestController.paramAction               |
+      | GET     | /param/myparam              |                  |                  | myTestController.paramAction               |
+      | GET     | /regex/42                   |                  |                  | myTestController.regexNumberAction         |
+      | GET     | /regex/marvin               |                  |                  | myTestController.regexStringAction         |
+      | GET     | /regex/Marvin               |                  |                  |                                            |
+      | POST    | /bind/id/42                 |                  |                  | bindTestController.bindIdAction            |
+      | POST    | /bind/id/forty-two          |                  |                  |                                            |
+      | DELETE  | /bind/slug/my_slug-1        |                  |                  | bindTestController.bindSlugAction          |
+      | GET     | /bind/hostslug/my-slug      | example.org      |                  | bindTestController.bindHostSlugAction      |
+      | GET     | /bind/specifichost          | myhost.com       |                  | bindTestController.bindSpecificHostAction  |
+      | GET     | /bind/specifichost          | myotherhost.com  |                  |                                            |
+      | GET     | /bind/specifichost          |                  |                  | bindTestController.bindSpecificHostAction  |
+      | GET     | /bind/regexphost            | api.domain.org   |                  | bindTestController.bindRegexpHostAction    |
+      | GET     | /bind/regexphost            | domain.com       |                  |                                            |
+      | GET     | /tenant/42                  | acme.example.org |                  | myTestController.tenantAction              |
+      | GET     | /tenant/42                  | example.com      |                  | myTestController.defaultTenantAction       |
+      | GET     | /any/static                 |                  |                  | myTestController.anyNameAction             |
+      | DELETE  | /any/thing                  |                  |                  | myTestController.anyNameAction             |
+      | GET     | /files/docs/2024/report.pdf |                  |                  | myTestController.filesAction               |
+      | GET     | /items/12-abc               |                  |                  | myTestController.itemAction                |
+      | GET     | /items/abc-12               |                  |                  |                                            |
+      | GET     | /report                     |                  |                  | myTestController.jsonReport                |
+      | GET     | /report                     |                  | application/json | myTestController.jsonReport                |
+      | GET     | /report                     |                  | text/html        | myTestController.htmlReport                |
+      | GET     | /noroute                    |                  |                  |                                            |
+
+    Examples:
+      | engine       |
+      | trie         |
+      | linear       |
+      | alternation  |
+      | compiled     |
+      | path_pattern |
+      | safe         |
+
+  Scenario: Matching a backtracking prone constraint in linear time with the safe engine
+    Given a router with the routes:
+      | method | path                | action               |
+      | GET    | /redos/{<(a+)+b>id} | redosController.show |
+    And the router uses the "safe" engine
+    When I route "GET" "/redos/aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaac"
+    Then no route should match the request
+    When I route "GET" "/redos/aaaab"
+    Then the request should be routed to "redosController.show"
+    And the route argument "id" should be "aaaab"
+
+  Scenario: Matching no route for the paths over the limits
+    Given a router with the routes:
+      | method | path              | action              |
+      | GET    | /files/{<.+>path} | fileController.show |
+    And the paths are limited to 20 characters and 3 segments
+    When I route "GET" "/files/docs/report"
+    Then the request should be routed to "fileController.show"
+    When I route "GET" "/files/abcdefghijklmnopqrstuvwxyz"
+    Then no route should match the request
+    When I route "GET" "/files/a/b/c"
+    Then no route should match the request
+
+  Scenario: Listing the routes the safe engine matches by their regex
+    Given a router with the routes:
+      | method | path                           | action                |
+      | GET    | /users/{<[0-9]+>id}            | userController.show   |
+      | GET    | /anchored/{<^[a-z]+>name}      | anchorController.show |
+      | GET    | /names/{<(?!admin)[a-z]+>name} | nameController.show   |
+      | GET    | /pairs/{<([a-z])\2>pair}      | pairController.show   |
+    Then the routes matched by their regex should be:
+      | anchorController.show |
+      | nameController.show   |
+      | pairController.show   |
+
+  Scenario: Routing with the alternation engine past the routes of another method or type
+    Given a router with the routes:
+      | method | path                 | action               | accepts          |
+      | POST   | /orders/{id}         | orderController.save |                  |
+      | GET    | /orders/{<[0-9]+>id} | orderController.json | application/json |
+      | GET    | /orders/{id}         | orderController.show |                  |
+      | GET    | /orders/{id}/{line}  | orderController.line |                  |
+    And the router uses the "alternation" engine
+    Then the requests should be routed like by the linear scan:
+      | method | path          | host | accept           | action               |
+      | POST   | /orders/42    |      |                  | orderController.save |
+      | GET    | /orders/42    |      |                  | orderController.json |
+      | GET    | /orders/42    |      | application/json | orderController.json |
+      | GET    | /orders/42    |      | text/html        | orderController.show |
+      | GET    | /orders/first |      | application/json | orderController.show |
+      | GET    | /orders/first |      | text/html        | orderController.show |
+      | GET    | /orders/42/7  |      |                  | orderController.line |
+      | PUT    | /orders/42    |      |                  |                      |
+
+  Scenario: Routing with the alternation engine a bucket holding a back reference
+    Given a router with the routes:
+      | method | path                     | action               |
+      | GET    | /orders/{<[0-9]+>id}     | orderController.show |
+      | GET    | /pairs/{<([a-z])\2>pair} | pairController.show  |
+      | GET    | /pairs/{name}            | pairController.name  |
+    And the router uses the "alternation" engine
+    Then the requests should be routed like by the linear scan:
+      | method | path       | host | accept | action               |
+      | GET    | /orders/42 |      |        | orderController.show |
+      | GET    | /pairs/aa  |      |        | pairController.show  |
+      | GET    | /pairs/ab  |      |        | pairController.name  |
+
+  Scenario: Routing with the compiled engine the inlined and the interpreted routes
+    Given a router with the routes:
+      | method | path                            | action               |
+      | GET    | /shop/{<[0-9]+>id}              | shopController.show  |
+      | GET    | /shop/{<[a-z0-9_-]*>slug}/items | shopController.items |
+      | GET    | /shop/{<[0-9][0-9]>code}/offer  | shopController.offer |
+      | GET    | /shop/{name}                    | shopController.name  |
+      | POST   | /shop/{id}                      | shopController.save  |
+      | GET    | /cart/{id}/lines/{line}         | cartController.line  |
+    And the router uses the "compiled" engine
+    Then the requests should be routed like by the linear scan:
+      | method | path            | host | accept | action               |
+      | GET    | /shop/42        |      |        | shopController.show  |
+      | GET    | /shop/first     |      |        | shopController.name  |
+      | GET    | /shop/42/       |      |        |                      |
+      | GET    | /shop//items    |      |        | shopController.items |
+      | GET    | /shop/new/items |      |        | shopController.items |
+      | GET    | /shop/42/offer  |      |        | shopController.offer |
+      | GET    | /shop/421/offer |      |        |                      |
+      | POST   | /shop/first     |      |        | shopController.save  |
+      | GET    | /cart/1/lines/2 |      |        | cartController.line  |
+      | GET    | /cart/1/lines   |      |        |                      |
+
+  Scenario: Routing with the path pattern engine the translated routes and the paths it doesn't parse
+    Given a router with the routes:
+      | method | path                     | action              |
+      | GET    | /docs/{id}               | docController.show  |
+      | GET    | /docs/{<[0-9]+>id}/pages | docController.pages |
+      | GET    | /docs/{<[0-9]*>id}/notes | docController.notes |
+      | GET    | /files/{<.+>path}        | fileController.show |
+    And the router uses the "path_pattern" engine
+    Then the requests should be routed like by the linear scan:
+      | method | path            | host | accept | action              |
+      | GET    | /docs/42        |      |        | docController.show  |
+      | GET    | /docs/42/       |      |        |                     |
+      | GET    | /docs/42;v=1    |      |        | docController.show  |
+      | GET    | /docs/a%2Fb     |      |        | docController.show  |
+      | GET    | /docs/42/pages  |      |        | docController.pages |
+      | GET    | /docs/abc/pages |      |        |                     |
+      | GET    | /docs//notes    |      |        | docController.notes |
+      | GET    | /docs/7/notes   |      |        | docController.notes |
+      | GET    | /files/a/b/c    |      |        | fileController.show |
+
+  Scenario: Telling the HEAD requests routed to a GET route
+    Given a router with the routes:
+      | method | path           | action              |
+      | GET    | /head/implicit | headController.get  |
+      | HEAD   | /head/explicit | headController.head |
+      | GET    | /head/explicit | headController.get  |
+    When I find the route of "HEAD" "/head/implicit"
+    Then the route found should be "headController.get"
+    And the request should be a HEAD request routed to a GET route
+    When I find the route of "HEAD" "/head/explicit"
+    Then the route found should be "headController.head"
+    And the request should not be a HEAD request routed to a GET route
+    When I find the route of "GET" "/head/explicit"
+    Then the route found should be "headController.get"
+    And the request should not be a HEAD request routed to a GET route
@@ -0,0 +1,52 @@
+Feature: Request adapter
+  As a developer routing the servlet requests
+  I want the requests to be parsed once and only as far as needed
+  In order to keep the routing of a request cheap
+
+  Scenario: Reading the request headers when they are asked for
+    Given a servlet request "GET" "/users/42" with the headers:
+      | X-Tenant | acme |
+    When I parse the servlet request
+    And the header "X-Trace" "abc" is added to the servlet request
+    Then the request header "x-trace" should be "abc"
+    And the request header "x-tenant" should be "acme"
+
+  Scenario: Keeping the request headers of a detached request
+    Given a servlet request "GET" "/users/42" with the headers:
+      | X-Tenant | acme |
+    When I parse the servlet request
+    And I detach the request from the servlet request
+    And the header "X-Trace" "abc" is added to the servlet request
+    Then the request header "x-tenant" should be "acme"
+    And the request should have no header "x-trace"
+
+  Scenario: Parsing the current request once
+    Given a servlet request "GET" "/users/42" with the headers:
+      | Accept | application/json |
+    And the servlet request is the current request
+    When I get the current request
+    Then the current request should be kept in the servlet request
+    And the current request should be the same on the next lookup
+
+  Scenario: Reusing the base of the requests to the same host
+    Given a servlet request "GET" "/users/42" with the headers:
+      | Host | shared.example.org:8080 |
+    When I parse the servlet request
+    Then the request base should be "http://shared.example.org:8080"
+    And the next request to the same host should get the same base
+
+  Scenario: Evicting the least recently used request bases
+    Given a servlet request "GET" "/users/42" with the headers:
+      | Host | evicted.example.org |
+    When I parse the servlet request
+    Then the request base should be "http://evicted.example.org"
+    When the bases of 1000 other hosts are read
+    Then the next request to the same host should get a new base
+
+  Scenario: Keeping the request bases in use
+    Given a servlet request "GET" "/users/42" with the headers:
+      | Host | kept.example.org |
+    When I parse the servlet request
+    Then the request base should be "http://kept.example.org"
+    When the bases of 1000 other hosts are read along with the request base
+    Then the next request to the same host should get the same base
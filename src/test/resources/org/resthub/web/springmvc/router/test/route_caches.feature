@@ -0,0 +1,62 @@
+Feature: Route caches
+  As a developer enabling the route caches
+  I want the cached results to follow the route changes
+  In order to never route a request with outdated routes
+
+  Background:
+    Given a router with the routes:
+      | method | path         | action                  |
+      | GET    | /users/{id}  | userController.show     |
+
+  Scenario: Routing a repeated request from the match cache
+    Given a match cache of 100 requests
+    When I route "GET" "/users/42"
+    And I route "GET" "/users/42"
+    Then the request should be routed to "userController.show"
+    And the route argument "id" should be "42"
+    And the match cache should count 1 hit
+    And the match cache should hold 1 request
+
+  Scenario: Dropping the match cache when the routes change
+    Given a match cache of 100 requests
+    When I route "GET" "/users/new"
+    And I prepend the route "GET" "/users/new" "userController.create"
+    And I route "GET" "/users/new"
+    Then the request should be routed to "userController.create"
+    And the match cache should count 0 hits
+
+  Scenario: Ignoring a result matched while the routes change
+    Given a match cache of 100 requests
+    And the route "GET" "/users/new" "userController.create" is prepended while the next request is matched
+    When I route "GET" "/users/new"
+    Then the request should be routed to "userController.show"
+    When I route "GET" "/users/new"
+    Then the request should be routed to "userController.create"
+    And the match cache should count 0 hits
+
+  Scenario: Routing a repeated unmatched request from the miss cache
+    Given a miss cache of 100 requests
+    When I route "GET" "/orders/1"
+    And I route "GET" "/orders/1"
+    Then no route should match the request
+    And the miss cache should count 1 hit
+
+  Scenario: Routing a cached unmatched request once a route matches it
+    Given a miss cache of 100 requests
+    When I route "GET" "/orders/1"
+    And I add the route "GET" "/orders/{id}" "orderController.show"
+    And I route "GET" "/orders/1"
+    Then the request should be routed to "orderController.show"
+    And the miss cache should count 0 hits
+
+  Scenario: Counting a lookup as missed by each cache not holding its result
+    Given a match cache of 100 requests
+    And a miss cache of 100 requests
+    When I route "GET" "/users/42"
+    And I route "GET" "/users/42"
+    And I route "GET" "/orders/1"
+    And I route "GET" "/orders/1"
+    Then the match cache should count 1 hit
+    And the match cache should count 2 misses
+    And the miss cache should count 1 hit
+    And the miss cache should count 3 misses
@@ -0,0 +1,39 @@
+Feature: Route overlaps
+  As a developer declaring many routes
+  I want to know the routes matching the same requests
+  In order to find the routes an earlier route makes unreachable
+
+  Background:
+    Given a router with the routes:
+      | method | path                | action                | accepts          |
+      | GET    | /users/new          | userController.create |                  |
+      | GET    | /users/{id}         | userController.show   |                  |
+      | GET    | /users/{<[0-9]+>id} | userController.number |                  |
+      | *      | /status             | statusController.any  |                  |
+      | GET    | /status             | statusController.get  |                  |
+      | GET    | /report             | reportController.json | application/json |
+      | GET    | /report             | reportController.html | text/html        |
+      | POST   | /orders             | orderController.save  |                  |
+
+  Scenario: Finding the routes an earlier route makes unreachable
+    Then the unreachable routes should be:
+      | action                | shadowed by          |
+      | userController.number | userController.show  |
+      | statusController.get  | statusController.any |
+
+  Scenario: Finding the routes no other route may match
+    Then the independence of the routes should be:
+      | action                | independent |
+      | userController.create | false       |
+      | userController.show   | false       |
+      | reportController.json | false       |
+      | orderController.save  | true        |
+
+  Scenario: Finding the routes an added route makes unreachable
+    When I prepend the route "GET" "/{page}" "pageController.show"
+    Then the unreachable routes should be:
+      | action                | shadowed by          |
+      | userController.number | userController.show  |
+      | statusController.get  | pageController.show  |
+      | reportController.json | pageController.show  |
+      | reportController.html | pageController.show  |
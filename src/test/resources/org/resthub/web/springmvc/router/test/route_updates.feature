@@ -0,0 +1,28 @@
+Feature: Route updates
+  As a developer changing the routes of a running application
+  I want a batch of changes to replace the routes at once
+  In order to never route a request with half of the changes
+
+  Background:
+    Given a router with the routes:
+      | method | path         | action               |
+      | GET    | /users/{id}  | userController.show  |
+      | GET    | /orders/{id} | orderController.show |
+
+  Scenario: Routing a request with the routes published before an update
+    Given the routes are replaced while the next request is matched by:
+      | method | path         | action               |
+      | GET    | /users/{id}  | userController.find  |
+      | GET    | /orders/{id} | orderController.find |
+    When I route "GET" "/users/42"
+    Then the request should be routed to "userController.show"
+    When I route "GET" "/orders/42"
+    Then the request should be routed to "orderController.find"
+
+  Scenario: Keeping the routes read before an update
+    When I read the routes
+    And I replace the routes by:
+      | method | path         | action               |
+      | GET    | /users/{id}  | userController.find  |
+    Then the routes read should be "userController.show,orderController.show"
+    And the routes should be "userController.find"